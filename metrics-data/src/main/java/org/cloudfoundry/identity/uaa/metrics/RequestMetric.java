@@ -18,9 +18,6 @@ package org.cloudfoundry.identity.uaa.metrics;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
-import java.util.LinkedList;
-import java.util.List;
-
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class RequestMetric {
     private String uri;
@@ -28,7 +25,10 @@ public class RequestMetric {
     private int statusCode;
     private long requestStartTime;
     private long requestCompleteTime;
-    private List<QueryMetric> queries = new LinkedList<>();
+    private long nrOfDatabaseQueries;
+    private long databaseQueryTime;
+    private long nrOfIntolerableQueries;
+    private long intolerableQueryTime;
 
     public static RequestMetric start(String uri, UrlGroup group, long start) {
         RequestMetric metric = new RequestMetric();
@@ -44,12 +44,16 @@ public class RequestMetric {
     }
 
     public void addQuery(QueryMetric query) {
-        queries.add(query);
+        addQuery(query.getRequestCompleteTime() - query.getRequestStartTime(), query.isIntolerable());
     }
 
-    @JsonIgnore
-    protected List<QueryMetric> getQueries() {
-        return queries;
+    public void addQuery(long time, boolean intolerable) {
+        nrOfDatabaseQueries++;
+        databaseQueryTime += time;
+        if (intolerable) {
+            nrOfIntolerableQueries++;
+            intolerableQueryTime += time;
+        }
     }
 
     public String getUri() {
@@ -69,11 +73,21 @@ public class RequestMetric {
     }
 
     public long getNrOfDatabaseQueries() {
-        return queries.size();
+        return nrOfDatabaseQueries;
     }
 
     public long getDatabaseQueryTime() {
-        return queries.stream().mapToLong(q -> q.getRequestCompleteTime() - q.getRequestStartTime()).sum();
+        return databaseQueryTime;
+    }
+
+    @JsonIgnore
+    public long getNrOfIntolerableQueries() {
+        return nrOfIntolerableQueries;
+    }
+
+    @JsonIgnore
+    public long getIntolerableQueryTime() {
+        return intolerableQueryTime;
     }
 
     public UrlGroup getUriGroup() {
@@ -133,8 +133,10 @@ public class ClientAdminBootstrap implements InitializingBean, ApplicationListen
 
     @Override
     public void afterPropertiesSet() throws Exception {
+        long start = System.currentTimeMillis();
         addNewClients();
         updateAutoApproveClients();
+        logger.info(String.format("Bootstrapped %d clients in %d ms", ofNullable(clients).map(Map::size).orElse(0), System.currentTimeMillis() - start));
     }
 
     /**
@@ -219,6 +221,8 @@ public class ClientAdminBootstrap implements InitializingBean, ApplicationListen
             }
 
             client.setAdditionalInformation(info);
+            // insert first: a new client costs one statement, and an existing one is
+            // only read back when its secret has to be compared
             try {
                 clientRegistrationService.addClientDetails(client, IdentityZone.getUaa().getId());
             } catch (ClientAlreadyExistsException e) {
@@ -479,7 +479,8 @@ public class ClientAdminEndpoints implements InitializingBean, ApplicationEventP
         List<ClientDetails> result = new ArrayList<ClientDetails>();
         List<ClientDetails> clients;
         try {
-            clients = clientDetailsService.query(filter, sortBy, "ascending".equalsIgnoreCase(sortOrder), IdentityZoneHolder.get().getId());
+            //one database page per requested page, so only the clients returned are read
+            clients = clientDetailsService.query(filter, sortBy, "ascending".equalsIgnoreCase(sortOrder), IdentityZoneHolder.get().getId(), Math.max(count, 1));
             if (count > clients.size()) {
                 count = clients.size();
             }
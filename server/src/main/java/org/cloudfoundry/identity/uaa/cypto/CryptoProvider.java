@@ -0,0 +1,76 @@
+package org.cloudfoundry.identity.uaa.cypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.NoSuchPaddingException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out {@link Cipher}, {@link Mac} and {@link Signature} instances that are cached
+ * per thread and algorithm, sparing the provider lookup of {@code getInstance} on every
+ * operation. The instances are not thread safe, callers must initialize them before each
+ * use and must not hand them to other threads.
+ * <p>
+ * {@link #getSecureRandom()} returns a per thread generator as well, so random bytes are
+ * not produced under a lock shared by all request threads.
+ */
+public final class CryptoProvider {
+
+    private static final ThreadLocal<Map<String, Cipher>> ciphers = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, Mac>> macs = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, Signature>> signatures = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<SecureRandom> random = ThreadLocal.withInitial(SecureRandom::new);
+
+    private CryptoProvider() {
+    }
+
+    public static Cipher getCipher(String transformation) {
+        Map<String, Cipher> cache = ciphers.get();
+        Cipher cipher = cache.get(transformation);
+        if (cipher == null) {
+            try {
+                cipher = Cipher.getInstance(transformation);
+            } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+                throw new IllegalStateException(e);
+            }
+            cache.put(transformation, cipher);
+        }
+        return cipher;
+    }
+
+    public static Mac getMac(String algorithm) {
+        Map<String, Mac> cache = macs.get();
+        Mac mac = cache.get(algorithm);
+        if (mac == null) {
+            try {
+                mac = Mac.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            cache.put(algorithm, mac);
+        }
+        return mac;
+    }
+
+    public static Signature getSignature(String algorithm) {
+        Map<String, Signature> cache = signatures.get();
+        Signature signature = cache.get(algorithm);
+        if (signature == null) {
+            try {
+                signature = Signature.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            cache.put(algorithm, signature);
+        }
+        return signature;
+    }
+
+    public static SecureRandom getSecureRandom() {
+        return random.get();
+    }
+}
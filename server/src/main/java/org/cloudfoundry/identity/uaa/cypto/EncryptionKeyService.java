@@ -99,6 +99,13 @@ public class EncryptionKeyService {
             return encryptionService.encrypt(plaintext);
         }
 
+        public byte[] encrypt(byte[] bytes) throws EncryptionServiceException {
+            if (encryptionService == null) {
+                encryptionService = new EncryptionService(getPassphrase());
+            }
+            return encryptionService.encrypt(bytes);
+        }
+
         public byte[] decrypt(byte[] encrypt) throws EncryptionServiceException {
             if (encryptionService == null) {
                 encryptionService = new EncryptionService(getPassphrase());
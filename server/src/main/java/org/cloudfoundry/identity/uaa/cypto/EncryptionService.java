@@ -1,5 +1,7 @@
 package org.cloudfoundry.identity.uaa.cypto;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.bouncycastle.crypto.digests.SHA256Digest;
 import org.bouncycastle.crypto.generators.PKCS5S2ParametersGenerator;
 import org.bouncycastle.crypto.params.KeyParameter;
@@ -12,11 +14,27 @@ import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.ByteArrayInputStream;
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-
+import java.util.concurrent.ExecutionException;
+
+/**
+ * AES-GCM encryption with a key derived from a passphrase using PBKDF2.
+ * <p>
+ * The ciphertext layout is {@code nonce | salt | ciphertext}. Key derivation is
+ * deliberately expensive, so an instance derives the key for its own salt once, when
+ * it is created, and encrypts everything with it.
+ * <p>
+ * Values written by other instances, or with a per value salt by earlier versions,
+ * carry a different salt. Their key costs one PBKDF2 run, and at most
+ * {@code legacyKeyCacheSize} of those keys are kept. Since the salt comes from the
+ * ciphertext, only values read back from storage may be passed to {@link #decrypt(byte[])},
+ * never values taken from a request.
+ */
 public class EncryptionService {
+    public static final int DEFAULT_LEGACY_KEY_CACHE_SIZE = 100;
+
     private Logger logger = LoggerFactory.getLogger(EncryptionService.class);
     private String passphrase;
 
@@ -27,28 +45,40 @@ public class EncryptionService {
     private final int AES_KEY_LENGTH_BITS = 256;
     private final String CIPHER = "AES";
     private final String CIPHERSCHEME = "AES/GCM/NoPadding";
-    private SecureRandom random = new SecureRandom();
+    private final byte[] salt;
+    private final SecretKey key;
+    private final Cache<ByteBuffer, SecretKey> legacyKeys;
 
 
     public EncryptionService(String passphrase) {
+        this(passphrase, DEFAULT_LEGACY_KEY_CACHE_SIZE);
+    }
+
+    /**
+     * @param passphrase         the passphrase keys are derived from
+     * @param legacyKeyCacheSize the number of keys kept for salts other than the own salt
+     */
+    public EncryptionService(String passphrase, int legacyKeyCacheSize) {
         this.passphrase = passphrase;
+        this.salt = new byte[PBKDF2_SALT_SIZE_BYTES];
+        CryptoProvider.getSecureRandom().nextBytes(this.salt);
+        this.key = new SecretKeySpec(generateKey(salt), CIPHER);
+        this.legacyKeys = CacheBuilder.newBuilder().maximumSize(legacyKeyCacheSize).build();
     }
 
     public byte[] encrypt(String plaintext) throws EncryptionServiceException {
-        try {
-            byte[] newSalt = generateRandomArray(PBKDF2_SALT_SIZE_BYTES);
-
-            SecretKey key = new SecretKeySpec(generateKey(newSalt), CIPHER);
+        return encrypt(plaintext.getBytes());
+    }
 
-            Cipher myCipher = Cipher.getInstance(CIPHERSCHEME);
+    public byte[] encrypt(byte[] bytes) throws EncryptionServiceException {
+        try {
+            Cipher myCipher = CryptoProvider.getCipher(CIPHERSCHEME);
             byte[] newNonce = generateRandomArray(GCM_IV_NONCE_SIZE_BYTES);
 
             GCMParameterSpec spec = new GCMParameterSpec(GCM_AUTHENTICATION_TAG_SIZE_BITS, newNonce);
             myCipher.init(Cipher.ENCRYPT_MODE, key, spec);
 
-            byte[] bytes = plaintext.getBytes();
-
-            return Arrays.concatenate(newNonce, newSalt, myCipher.doFinal(bytes));
+            return Arrays.concatenate(newNonce, salt, myCipher.doFinal(bytes));
         } catch (Exception e) {
             logger.error("Encryption failed", e);
             throw new EncryptionServiceException(e);
@@ -64,9 +94,9 @@ public class EncryptionService {
             fileInputStream.read(myNonce);
             fileInputStream.read(mySalt);
 
-            SecretKey key = new SecretKeySpec(generateKey(mySalt), CIPHER);
+            SecretKey key = getKey(mySalt);
 
-            Cipher myCipher = Cipher.getInstance(CIPHERSCHEME);
+            Cipher myCipher = CryptoProvider.getCipher(CIPHERSCHEME);
             GCMParameterSpec spec = new GCMParameterSpec(GCM_AUTHENTICATION_TAG_SIZE_BITS, myNonce);
 
             myCipher.init(Cipher.DECRYPT_MODE, key, spec);
@@ -79,14 +109,21 @@ public class EncryptionService {
 
     private byte[] generateRandomArray(int sizeInBytes) throws NoSuchAlgorithmException {
         final byte[] randomArray = new byte[sizeInBytes];
-        random.nextBytes(randomArray);
+        CryptoProvider.getSecureRandom().nextBytes(randomArray);
         return randomArray;
     }
 
-    private byte[] generateKey(byte[] salt) throws UnsupportedEncodingException {
+    private SecretKey getKey(byte[] salt) throws ExecutionException {
+        if (Arrays.areEqual(this.salt, salt)) {
+            return key;
+        }
+        return legacyKeys.get(ByteBuffer.wrap(salt), () -> new SecretKeySpec(generateKey(salt), CIPHER));
+    }
+
+    private byte[] generateKey(byte[] salt) {
         PKCS5S2ParametersGenerator gen = new PKCS5S2ParametersGenerator(new SHA256Digest());
 
-        gen.init(this.passphrase.getBytes("UTF-8"), salt, PBKDF2_ITERATIONS);
+        gen.init(this.passphrase.getBytes(StandardCharsets.UTF_8), salt, PBKDF2_ITERATIONS);
         return ((KeyParameter) gen.generateDerivedParameters(AES_KEY_LENGTH_BITS)).getKey();
     }
 }
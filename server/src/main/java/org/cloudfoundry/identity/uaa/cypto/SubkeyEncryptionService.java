@@ -0,0 +1,97 @@
+package org.cloudfoundry.identity.uaa.cypto;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
+import org.bouncycastle.crypto.generators.PKCS5S2ParametersGenerator;
+import org.bouncycastle.crypto.params.HKDFParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * AES-GCM encryption for short lived, high volume values that come back in requests,
+ * such as authorization codes.
+ * <p>
+ * A master key is derived from the passphrase with PBKDF2 once, when the service is
+ * created. Its salt is fixed by the purpose, so all instances sharing the passphrase
+ * derive the same master key. Every value is then encrypted with its own key, derived
+ * with HKDF-SHA256 from the master key and a random 256 bit value stored with the
+ * ciphertext. No key encrypts more than one value, so the number of values sealed under
+ * the master key is not bounded by nonce collisions, and decrypting a forged value costs
+ * one HKDF run, never a PBKDF2 run.
+ * <p>
+ * The ciphertext layout is {@code subkey salt | nonce | ciphertext}.
+ */
+public class SubkeyEncryptionService {
+
+    private static final int GCM_AUTHENTICATION_TAG_SIZE_BITS = 128;
+    private static final int GCM_IV_NONCE_SIZE_BYTES = 12;
+    private static final int PBKDF2_ITERATIONS = 65536;
+    private static final int SUBKEY_SALT_SIZE_BYTES = 32;
+    private static final int AES_KEY_LENGTH_BITS = 256;
+    private static final String CIPHER = "AES";
+    private static final String CIPHERSCHEME = "AES/GCM/NoPadding";
+
+    private final byte[] masterKey;
+    private final byte[] info;
+
+    /**
+     * @param passphrase the passphrase the master key is derived from
+     * @param purpose    what the values are used for, values of one purpose cannot be
+     *                   decrypted by a service created for another
+     */
+    public SubkeyEncryptionService(String passphrase, String purpose) {
+        this.info = purpose.getBytes(StandardCharsets.UTF_8);
+        PKCS5S2ParametersGenerator gen = new PKCS5S2ParametersGenerator(new SHA256Digest());
+        gen.init(passphrase.getBytes(StandardCharsets.UTF_8), info, PBKDF2_ITERATIONS);
+        this.masterKey = ((KeyParameter) gen.generateDerivedParameters(AES_KEY_LENGTH_BITS)).getKey();
+    }
+
+    public byte[] encrypt(byte[] bytes) throws EncryptionServiceException {
+        try {
+            byte[] subkeySalt = new byte[SUBKEY_SALT_SIZE_BYTES];
+            byte[] nonce = new byte[GCM_IV_NONCE_SIZE_BYTES];
+            CryptoProvider.getSecureRandom().nextBytes(subkeySalt);
+            CryptoProvider.getSecureRandom().nextBytes(nonce);
+
+            Cipher cipher = CryptoProvider.getCipher(CIPHERSCHEME);
+            cipher.init(Cipher.ENCRYPT_MODE, getSubkey(subkeySalt), new GCMParameterSpec(GCM_AUTHENTICATION_TAG_SIZE_BITS, nonce));
+            return Arrays.concatenate(subkeySalt, nonce, cipher.doFinal(bytes));
+        } catch (Exception e) {
+            throw new EncryptionServiceException(e);
+        }
+    }
+
+    /**
+     * Failures are not logged, the values decrypted here come from requests and callers
+     * decide how to report them.
+     */
+    public byte[] decrypt(byte[] encrypted) throws EncryptionServiceException {
+        try {
+            int headerLength = SUBKEY_SALT_SIZE_BYTES + GCM_IV_NONCE_SIZE_BYTES;
+            if (encrypted.length < headerLength) {
+                throw new IllegalArgumentException("Encrypted value is too short");
+            }
+            byte[] subkeySalt = Arrays.copyOfRange(encrypted, 0, SUBKEY_SALT_SIZE_BYTES);
+            byte[] nonce = Arrays.copyOfRange(encrypted, SUBKEY_SALT_SIZE_BYTES, headerLength);
+
+            Cipher cipher = CryptoProvider.getCipher(CIPHERSCHEME);
+            cipher.init(Cipher.DECRYPT_MODE, getSubkey(subkeySalt), new GCMParameterSpec(GCM_AUTHENTICATION_TAG_SIZE_BITS, nonce));
+            return cipher.doFinal(encrypted, headerLength, encrypted.length - headerLength);
+        } catch (Exception e) {
+            throw new EncryptionServiceException(e);
+        }
+    }
+
+    private SecretKeySpec getSubkey(byte[] subkeySalt) {
+        HKDFBytesGenerator hkdf = new HKDFBytesGenerator(new SHA256Digest());
+        hkdf.init(new HKDFParameters(masterKey, subkeySalt, info));
+        byte[] subkey = new byte[AES_KEY_LENGTH_BITS / 8];
+        hkdf.generateBytes(subkey, 0, subkey.length);
+        return new SecretKeySpec(subkey, CIPHER);
+    }
+}
@@ -212,7 +212,7 @@ public class IdentityProviderBootstrap
 
     @Override
     public void afterPropertiesSet() throws Exception {
-
+        long start = System.currentTimeMillis();
         providers.clear();
         addLdapProvider();
         addSamlProviders();
@@ -220,6 +220,10 @@ public class IdentityProviderBootstrap
         addKeystoneProvider();
 
         String zoneId = IdentityZone.getUaa().getId();
+        Map<String, IdentityProvider> existingProviders = new HashMap<>();
+        for (IdentityProvider existing : provisioning.retrieveAll(false, zoneId)) {
+            existingProviders.put(existing.getOriginKey(), existing);
+        }
 
         for (IdentityProviderWrapper wrapper: providers) {
             IdentityProvider provider = wrapper.getProvider();
@@ -227,7 +231,7 @@ public class IdentityProviderBootstrap
                 //dont process origins slated for deletion
                 continue;
             }
-            IdentityProvider existing = getProviderByOrigin(provider.getOriginKey(), zoneId);
+            IdentityProvider existing = existingProviders.get(provider.getOriginKey());
             provider.setIdentityZoneId(zoneId);
             if (existing==null) {
                 provisioning.create(provider, zoneId);
@@ -240,6 +244,7 @@ public class IdentityProviderBootstrap
             }
         }
         updateDefaultZoneUaaIDP();
+        logger.info(String.format("Bootstrapped %d identity providers in %d ms", providers.size(), System.currentTimeMillis() - start));
     }
 
     public IdentityProvider getProviderByOrigin(String origin, String zoneId) {
@@ -25,11 +25,14 @@ import java.util.Map;
 public class QueryFilter extends SlowQueryReport {
 
     private TimeService timeService = new TimeServiceImpl();
+    private QueryStatistics queryStatistics = QueryStatistics.getGlobal();
 
-    protected void report(String query, long start, long delta) {
+    protected void report(String query, long start, long delta, boolean failed) {
+        boolean intolerable = delta > getThreshold();
+        queryStatistics.record(query, delta, failed, intolerable);
         RequestMetric metric = MetricsAccessor.getCurrent();
         if (metric!=null) {
-            metric.addQuery(new QueryMetric(query, start, delta, delta>getThreshold()));
+            metric.addQuery(delta, intolerable);
         }
     }
 
@@ -45,7 +48,7 @@ public class QueryFilter extends SlowQueryReport {
                                        String name, long start, Throwable t) {
         String sql = super.reportFailedQuery(query, args, name, start, t);
         long delta = timeService.getCurrentTimeMillis() - start;
-        report(sql, start, delta);
+        report(sql, start, delta, true);
         return sql;
     }
 
@@ -53,7 +56,7 @@ public class QueryFilter extends SlowQueryReport {
     protected String reportQuery(String query, Object[] args,
                                  String name, long start, long delta) {
         String sql = super.reportQuery(query, args, name, start, delta);
-        report(sql, start, delta);
+        report(sql, start, delta, false);
         return sql;
     }
 
@@ -66,4 +69,8 @@ public class QueryFilter extends SlowQueryReport {
     public void setTimeService(TimeService timeService) {
         this.timeService = timeService;
     }
+
+    public void setQueryStatistics(QueryStatistics queryStatistics) {
+        this.queryStatistics = queryStatistics;
+    }
 }
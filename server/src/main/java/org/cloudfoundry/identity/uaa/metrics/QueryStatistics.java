@@ -0,0 +1,134 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.metrics;
+
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Aggregates SQL execution statistics by normalized statement, so that the
+ * statements dominating database time can be found without keeping the SQL
+ * of individual executions around.
+ * <p>
+ * JDBC interceptors are created per connection by the pool, so {@link QueryFilter}
+ * records into the shared {@link #getGlobal()} instance, which is also the one
+ * exported over JMX.
+ */
+@ManagedResource(
+    objectName="cloudfoundry.identity:name=DatabaseQueries",
+    description = "UAA Database Query Metrics"
+)
+public class QueryStatistics {
+
+    public static final int DEFAULT_MAX_STATEMENTS = 500;
+    public static final String OTHER_STATEMENTS = "other";
+
+    private static final QueryStatistics GLOBAL = new QueryStatistics(DEFAULT_MAX_STATEMENTS);
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMERIC_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+
+    private final int maxStatements;
+    private final ConcurrentMap<String, String> fingerprints = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, StatementStatistics> statistics = new ConcurrentHashMap<>();
+
+    public QueryStatistics(int maxStatements) {
+        this.maxStatements = maxStatements;
+    }
+
+    public static QueryStatistics getGlobal() {
+        return GLOBAL;
+    }
+
+    public void record(String sql, long time, boolean failed, boolean intolerable) {
+        if (sql == null) {
+            return;
+        }
+        getStatistics(fingerprint(sql)).record(time, failed, intolerable);
+    }
+
+    protected String fingerprint(String sql) {
+        String fingerprint = fingerprints.get(sql);
+        if (fingerprint == null) {
+            fingerprint = normalize(sql);
+            if (fingerprints.size() < maxStatements * 4) {
+                fingerprints.putIfAbsent(sql, fingerprint);
+            }
+        }
+        return fingerprint;
+    }
+
+    protected StatementStatistics getStatistics(String fingerprint) {
+        StatementStatistics result = statistics.get(fingerprint);
+        if (result == null) {
+            if (statistics.size() >= maxStatements) {
+                fingerprint = OTHER_STATEMENTS;
+            }
+            result = statistics.computeIfAbsent(fingerprint, StatementStatistics::new);
+        }
+        return result;
+    }
+
+    /**
+     * Replaces literals with {@code ?}, collapses parameter lists such as
+     * {@code IN (?,?,?)} into {@code (?)} and normalizes whitespace, so that
+     * executions of the same statement share one set of counters.
+     */
+    public static String normalize(String sql) {
+        String result = STRING_LITERAL.matcher(sql).replaceAll("?");
+        result = NUMERIC_LITERAL.matcher(result).replaceAll("?");
+        result = WHITESPACE.matcher(result).replaceAll(" ");
+        result = PARAMETER_LIST.matcher(result).replaceAll("(?)");
+        return result.trim();
+    }
+
+    public List<StatementStatistics> getStatements() {
+        return statistics.values().stream()
+            .sorted(Comparator.comparingLong(StatementStatistics::getTotalTime).reversed())
+            .collect(Collectors.toList());
+    }
+
+    @ManagedMetric(category = "performance", displayName = "Distinct SQL statements")
+    public int getStatementCount() {
+        return statistics.size();
+    }
+
+    @ManagedMetric(category = "performance", displayName = "SQL statements by total time")
+    public Map<String, String> getSummary() {
+        Map<String, String> data = new LinkedHashMap<>();
+        getStatements().forEach(s -> data.put(s.getStatement(), JsonUtils.writeValueAsString(s)));
+        return data;
+    }
+
+    @ManagedOperation(description = "Clears all collected SQL statement statistics")
+    public void reset() {
+        statistics.clear();
+        fingerprints.clear();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.metrics;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free counters for all executions of one normalized SQL statement.
+ */
+public class StatementStatistics {
+
+    /**
+     * Upper bounds, in milliseconds, of the latency histogram buckets.
+     * The last bucket holds everything above the last bound.
+     */
+    static final long[] BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000};
+
+    private final String statement;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder intolerable = new LongAdder();
+    private final LongAdder totalTime = new LongAdder();
+    private final AtomicLong maxTime = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS.length + 1);
+
+    public StatementStatistics(String statement) {
+        this.statement = statement;
+    }
+
+    public void record(long time, boolean failed, boolean intolerable) {
+        calls.increment();
+        totalTime.add(time);
+        maxTime.accumulateAndGet(time, Math::max);
+        histogram.incrementAndGet(bucket(time));
+        if (failed) {
+            failures.increment();
+        }
+        if (intolerable) {
+            this.intolerable.increment();
+        }
+    }
+
+    static int bucket(long time) {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            if (time <= BUCKETS[i]) {
+                return i;
+            }
+        }
+        return BUCKETS.length;
+    }
+
+    public String getStatement() {
+        return statement;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getIntolerableCount() {
+        return intolerable.sum();
+    }
+
+    public long getTotalTime() {
+        return totalTime.sum();
+    }
+
+    public long getMaxTime() {
+        return maxTime.get();
+    }
+
+    public double getAverageTime() {
+        long count = getCalls();
+        return count == 0 ? 0 : getTotalTime() / (double) count;
+    }
+
+    /**
+     * @return the number of executions per latency bucket, keyed by
+     * the bucket upper bound in milliseconds ("+Inf" for the last one)
+     */
+    public Map<String, Long> getHistogram() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS.length; i++) {
+            result.put(String.valueOf(BUCKETS[i]), histogram.get(i));
+        }
+        result.put("+Inf", histogram.get(BUCKETS.length));
+        return result;
+    }
+
+    @JsonIgnore
+    public long getBucketCount(int bucket) {
+        return histogram.get(bucket);
+    }
+}
@@ -34,7 +34,7 @@ public class JdbcUserGoogleMfaCredentialsProvisioning implements SystemDeletable
       "INSERT INTO user_google_mfa_credentials (user_id, secret_key, encrypted_validation_code, scratch_codes, mfa_provider_id, zone_id, encryption_key_label) VALUES (?,?,?,?,?,?,?)";
 
     private static final String UPDATE_USER_MFA_CONFIG_SQL =
-      "UPDATE user_google_mfa_credentials SET secret_key=?, encrypted_validation_code=?, scratch_codes=?, mfa_provider_id=?, zone_id=? WHERE user_id=?";
+      "UPDATE user_google_mfa_credentials SET secret_key=?, encrypted_validation_code=?, scratch_codes=?, mfa_provider_id=?, zone_id=?, encryption_key_label=? WHERE user_id=?";
 
     private static final String QUERY_USER_MFA_CONFIG_ALL_SQL = "SELECT * FROM user_google_mfa_credentials WHERE user_id=? AND mfa_provider_id=?";
 
@@ -96,6 +96,7 @@ public class JdbcUserGoogleMfaCredentialsProvisioning implements SystemDeletable
             }
             ps.setString(pos++, credentials.getMfaProviderId());
             ps.setString(pos++, zoneId);
+            ps.setString(pos++, encryptionKeyService.getActiveKey().getLabel());
             ps.setString(pos++, credentials.getUserId());
         });
         retrieve(credentials.getUserId(), credentials.getMfaProviderId());
@@ -12,15 +12,29 @@
  *******************************************************************************/
 package org.cloudfoundry.identity.uaa.oauth;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.cloudfoundry.identity.uaa.account.event.PasswordChangeEvent;
+import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
+import org.cloudfoundry.identity.uaa.audit.event.ApprovalModifiedEvent;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.client.event.AbstractClientAdminEvent;
 import org.cloudfoundry.identity.uaa.error.ParameterParsingException;
 import org.cloudfoundry.identity.uaa.error.UaaException;
 import org.cloudfoundry.identity.uaa.oauth.jwt.JwtHelper;
+import org.cloudfoundry.identity.uaa.oauth.event.TokenRevocationEvent;
 import org.cloudfoundry.identity.uaa.oauth.token.Claims;
+import org.cloudfoundry.identity.uaa.scim.event.UserModifiedEvent;
 import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.cloudfoundry.identity.uaa.util.TokenValidation;
+import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.ApplicationListener;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.AuthenticationException;
@@ -44,6 +58,9 @@ import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyList;
@@ -54,9 +71,15 @@ import static org.springframework.web.bind.annotation.RequestMethod.POST;
 /**
  * Controller which decodes access tokens for clients who are not able to do so
  * (or where opaque token values are used).
+ * <p>
+ * With a positive response cache expiration time, the claims of valid tokens are
+ * remembered, keyed by zone and token hash, for at most that long and never beyond
+ * the expiry of the token. Revocations and changes of users, clients and approvals
+ * clear the cache of this instance; other instances notice them only once their
+ * entries expire.
  */
 @Controller
-public class CheckTokenEndpoint implements InitializingBean {
+public class CheckTokenEndpoint implements InitializingBean, ApplicationListener<AbstractUaaEvent> {
 
     //Copy of the value from org.apache.Globals.PARAMETER_PARSE_FAILED_ATTR
     private static final String PARAMETER_PARSE_FAILED_ATTR = "org.apache.catalina.parameter_parse_failed";
@@ -67,6 +90,12 @@ public class CheckTokenEndpoint implements InitializingBean {
     protected final Log logger = LogFactory.getLog(getClass());
     private WebResponseExceptionTranslator exceptionTranslator = new DefaultWebResponseExceptionTranslator();
 
+    private long responseCacheExpirationTime = 0;
+    private int responseCacheSize = 10000;
+    private Cache<String, Claims> responseCache;
+    //bumped on every invalidation, so that checks that started before it do not cache their result
+    private final AtomicLong responseCacheGeneration = new AtomicLong();
+
     public void setTokenServices(ResourceServerTokenServices resourceServerTokenServices) {
         this.resourceServerTokenServices = resourceServerTokenServices;
     }
@@ -84,9 +113,44 @@ public class CheckTokenEndpoint implements InitializingBean {
         this.allowQueryString = allowQueryString;
     }
 
+    /**
+     * @param responseCacheExpirationTime how long, in seconds, the claims of a valid token are
+     *                                    remembered. Zero, the default, disables the cache.
+     */
+    public void setResponseCacheExpirationTime(long responseCacheExpirationTime) {
+        this.responseCacheExpirationTime = responseCacheExpirationTime;
+    }
+
+    public void setResponseCacheSize(int responseCacheSize) {
+        this.responseCacheSize = responseCacheSize;
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception {
         Assert.notNull(resourceServerTokenServices, "tokenServices must be set");
+        if (responseCacheExpirationTime > 0) {
+            responseCache = CacheBuilder.newBuilder()
+                .maximumSize(responseCacheSize)
+                .expireAfterWrite(responseCacheExpirationTime, TimeUnit.SECONDS)
+                .build();
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(AbstractUaaEvent event) {
+        if (responseCache == null) {
+            return;
+        }
+        if (event instanceof TokenRevocationEvent ||
+            event instanceof UserModifiedEvent ||
+            event instanceof PasswordChangeEvent ||
+            event instanceof ApprovalModifiedEvent ||
+            event instanceof AbstractClientAdminEvent ||
+            event instanceof EntityDeletedEvent ||
+            event instanceof IdentityZoneModifiedEvent) {
+            responseCacheGeneration.incrementAndGet();
+            responseCache.invalidateAll();
+        }
     }
 
     @RequestMapping(value = "/check_token", method = POST)
@@ -104,23 +168,20 @@ public class CheckTokenEndpoint implements InitializingBean {
             throw new HttpRequestMethodNotSupportedException("POST");
         }
 
-        OAuth2AccessToken token = resourceServerTokenServices.readAccessToken(value);
-        if (token == null) {
-            throw new InvalidTokenException("Token was not recognised");
-        }
-
-        if (token.getExpiration() != null && token.getExpiration().before(timeService.getCurrentDate())) {
-            throw new InvalidTokenException("Token has expired");
-        }
-
-        try {
-            resourceServerTokenServices.loadAuthentication(value);
-        } catch (AuthenticationException x) {
-            throw new InvalidTokenException((x.getMessage()));
+        String cacheKey = responseCache == null ? null : IdentityZoneHolder.get().getId() + ":" + DigestUtils.sha256Hex(value);
+        Claims response = cacheKey == null ? null : getCachedClaims(cacheKey);
+        if (response == null) {
+            long generation = responseCacheGeneration.get();
+            response = getClaimsForValidToken(value);
+            if (cacheKey != null) {
+                responseCache.put(cacheKey, response);
+                //an invalidation that ran while the token was validated may have missed this entry
+                if (responseCacheGeneration.get() != generation) {
+                    responseCache.invalidate(cacheKey);
+                }
+            }
         }
 
-        Claims response = getClaimsForToken(token.getValue());
-
         List<String> claimScopes = response.getScope().stream().map(String::toLowerCase).collect(Collectors.toList());
 
         List<String> missingScopes = new ArrayList<>();
@@ -137,6 +198,47 @@ public class CheckTokenEndpoint implements InitializingBean {
         return response;
     }
 
+    private Claims getClaimsForValidToken(String value) {
+        Claims response;
+        if (resourceServerTokenServices instanceof UaaTokenServices) {
+            //validate once, and share the decoded token, client and user between both steps
+            UaaTokenServices uaaTokenServices = (UaaTokenServices) resourceServerTokenServices;
+            TokenValidation tokenValidation = uaaTokenServices.validateAccessToken(value);
+            checkAccessToken(uaaTokenServices.readAccessToken(tokenValidation), () -> uaaTokenServices.loadAuthentication(tokenValidation));
+            response = getClaims(tokenValidation.getClaims());
+        } else {
+            OAuth2AccessToken token = resourceServerTokenServices.readAccessToken(value);
+            checkAccessToken(token, () -> resourceServerTokenServices.loadAuthentication(value));
+            response = getClaimsForToken(token.getValue());
+        }
+        return response;
+    }
+
+    private Claims getCachedClaims(String cacheKey) {
+        Claims claims = responseCache.getIfPresent(cacheKey);
+        if (claims != null && claims.getExp() != null && claims.getExp() * 1000 <= timeService.getCurrentTimeMillis()) {
+            responseCache.invalidate(cacheKey);
+            return null;
+        }
+        return claims;
+    }
+
+    private void checkAccessToken(OAuth2AccessToken token, Runnable loadAuthentication) {
+        if (token == null) {
+            throw new InvalidTokenException("Token was not recognised");
+        }
+
+        if (token.getExpiration() != null && token.getExpiration().before(timeService.getCurrentDate())) {
+            throw new InvalidTokenException("Token has expired");
+        }
+
+        try {
+            loadAuthentication.run();
+        } catch (AuthenticationException x) {
+            throw new InvalidTokenException((x.getMessage()));
+        }
+    }
+
     private boolean hadParsedAllArgs(HttpServletRequest request) {
         return request.getAttribute(PARAMETER_PARSE_FAILED_ATTR) == null;
     }
@@ -158,6 +260,14 @@ public class CheckTokenEndpoint implements InitializingBean {
         }
     }
 
+    private Claims getClaims(Map<String, Object> tokenClaims) {
+        try {
+            return JsonUtils.convertValue(tokenClaims, Claims.class);
+        } catch (JsonUtils.JsonUtilException e) {
+            throw new InvalidTokenException("Cannot read token claims", e);
+        }
+    }
+
     private Claims getClaimsForToken(String token) {
         Jwt tokenJwt;
         try {
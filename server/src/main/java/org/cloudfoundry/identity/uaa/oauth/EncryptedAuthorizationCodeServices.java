@@ -0,0 +1,240 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.oauth;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.cloudfoundry.identity.uaa.cypto.EncryptionKeyService;
+import org.cloudfoundry.identity.uaa.cypto.EncryptionKeyService.EncryptionKey;
+import org.cloudfoundry.identity.uaa.cypto.EncryptionServiceException;
+import org.cloudfoundry.identity.uaa.cypto.SubkeyEncryptionService;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
+import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.common.exceptions.InvalidGrantException;
+import org.springframework.security.oauth2.common.util.RandomValueStringGenerator;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.code.AuthorizationCodeServices;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Issues authorization codes that carry the authentication themselves, compressed and
+ * encrypted with the active key of the {@link EncryptionKeyService}, so the code grant
+ * needs no database writes.
+ * <p>
+ * Codes are encrypted with a {@link SubkeyEncryptionService}, so every code has its own
+ * key and a code presented to the token endpoint is checked without a PBKDF2 run. The
+ * master key of a passphrase is derived once, for the active key when this service is
+ * created, for other configured keys when their first code is redeemed.
+ * <p>
+ * Each code has a random id. Redeemed ids are recorded in the {@code redeemed_code} table,
+ * whose primary key makes a code single use across all instances, until the code expires.
+ * Redeeming a code therefore takes a single insert instead of the insert and delete of the
+ * database backed {@link UaaTokenStore}.
+ * <p>
+ * When disabled, codes are created by the delegate. Codes of the delegate are always
+ * consumed by the delegate, so the mode can be switched without failing codes in flight.
+ */
+public class EncryptedAuthorizationCodeServices implements AuthorizationCodeServices {
+
+    public static final String CODE_PREFIX = "e.";
+
+    private static final String CODE_ID = "i";
+    private static final String EXPIRES_AT = "e";
+    private static final String ZONE_ID = "z";
+    private static final String AUTHENTICATION = "a";
+    private static final String CODE_KEY_PURPOSE = "uaa-authorization-code";
+
+    protected static final String INSERT_REDEEMED_CODE = "insert into redeemed_code (code_id, expires_at) values (?,?)";
+    protected static final String DELETE_EXPIRED_CODES = "delete from redeemed_code where expires_at < ?";
+
+    private static Log logger = LogFactory.getLog(EncryptedAuthorizationCodeServices.class);
+
+    private final EncryptionKeyService encryptionKeyService;
+    private final AuthorizationCodeServices delegate;
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentMap<String, SubkeyEncryptionService> codeKeys = new ConcurrentHashMap<>();
+    private final RandomValueStringGenerator generator = new RandomValueStringGenerator(16);
+    private final AtomicLong lastClean = new AtomicLong(0);
+    private TimeService timeService = new TimeServiceImpl();
+    private boolean enabled = false;
+    private long expirationTime = UaaTokenStore.EXPIRATION_TIME;
+
+    public EncryptedAuthorizationCodeServices(EncryptionKeyService encryptionKeyService, AuthorizationCodeServices delegate, JdbcTemplate jdbcTemplate) {
+        this.encryptionKeyService = encryptionKeyService;
+        this.delegate = delegate;
+        this.jdbcTemplate = jdbcTemplate;
+        getCodeKey(encryptionKeyService.getActiveKey());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setTimeService(TimeService timeService) {
+        this.timeService = timeService;
+    }
+
+    /**
+     * @param expirationTime how long, in milliseconds, a code may be redeemed
+     */
+    public void setExpirationTime(long expirationTime) {
+        this.expirationTime = expirationTime;
+    }
+
+    @Override
+    public String createAuthorizationCode(OAuth2Authentication authentication) {
+        if (!enabled) {
+            return delegate.createAuthorizationCode(authentication);
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put(CODE_ID, generator.generate());
+        data.put(EXPIRES_AT, timeService.getCurrentTimeMillis() + expirationTime);
+        data.put(ZONE_ID, IdentityZoneHolder.get().getId());
+        data.put(AUTHENTICATION, UaaTokenStore.toCompactMap(authentication));
+
+        EncryptionKey key = encryptionKeyService.getActiveKey();
+        byte[] encrypted;
+        try {
+            encrypted = getCodeKey(key).encrypt(deflate(JsonUtils.writeValueAsBytes(data)));
+        } catch (EncryptionServiceException e) {
+            throw new IllegalStateException("Unable to encrypt authorization code", e);
+        }
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return CODE_PREFIX + encoder.encodeToString(key.getLabel().getBytes(StandardCharsets.UTF_8)) + "." + encoder.encodeToString(encrypted);
+    }
+
+    @Override
+    public OAuth2Authentication consumeAuthorizationCode(String code) throws InvalidGrantException {
+        if (code == null || !code.startsWith(CODE_PREFIX)) {
+            return delegate.consumeAuthorizationCode(code);
+        }
+        Map<String, Object> data = decrypt(code);
+        if (data == null) {
+            throw new InvalidGrantException("Invalid authorization code: " + code);
+        }
+        long expiresAt = ((Number) data.get(EXPIRES_AT)).longValue();
+        if (expiresAt < timeService.getCurrentTimeMillis()) {
+            throw new InvalidGrantException("Authorization code expired: " + code);
+        }
+        if (!IdentityZoneHolder.get().getId().equals(data.get(ZONE_ID))) {
+            throw new InvalidGrantException("Invalid authorization code: " + code);
+        }
+        performExpirationClean();
+        try {
+            jdbcTemplate.update(INSERT_REDEEMED_CODE, data.get(CODE_ID), expiresAt);
+        } catch (DuplicateKeyException e) {
+            logger.debug("[encrypted code] Code has already been redeemed:" + data.get(CODE_ID));
+            throw new InvalidGrantException("Invalid authorization code: " + code);
+        }
+        return UaaTokenStore.fromCompactMap((Map<String, Object>) data.get(AUTHENTICATION));
+    }
+
+    protected void performExpirationClean() {
+        long now = timeService.getCurrentTimeMillis();
+        long last = lastClean.get();
+        //ids are kept until the codes expire; only one request per interval removes them
+        if ((now - last) > expirationTime && lastClean.compareAndSet(last, now)) {
+            try {
+                int expired = jdbcTemplate.update(DELETE_EXPIRED_CODES, now);
+                logger.debug("[encrypted code] Removed " + expired + " expired code ids.");
+            } catch (DeadlockLoserDataAccessException e) {
+                logger.debug("[encrypted code] Deadlock trying to expire code ids, ignored.");
+            }
+        }
+    }
+
+    protected Map<String, Object> decrypt(String code) {
+        int separator = code.indexOf('.', CODE_PREFIX.length());
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            String label = new String(decoder.decode(code.substring(CODE_PREFIX.length(), separator)), StandardCharsets.UTF_8);
+            Optional<EncryptionKey> key = encryptionKeyService.getKey(label);
+            if (!key.isPresent()) {
+                logger.debug("[encrypted code] Unknown encryption key:" + label);
+                return null;
+            }
+            byte[] data = inflate(getCodeKey(key.get()).decrypt(decoder.decode(code.substring(separator + 1))));
+            return JsonUtils.readValue(data, new TypeReference<Map<String, Object>>() {});
+        } catch (Exception | EncryptionServiceException e) {
+            logger.debug("[encrypted code] Unable to decrypt code:" + e.getMessage());
+            return null;
+        }
+    }
+
+    private SubkeyEncryptionService getCodeKey(EncryptionKey key) {
+        return codeKeys.computeIfAbsent(key.getLabel(), label -> new SubkeyEncryptionService(key.getPassphrase(), CODE_KEY_PURPOSE));
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated authorization code");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
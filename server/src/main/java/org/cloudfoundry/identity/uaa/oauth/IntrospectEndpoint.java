@@ -5,6 +5,7 @@ import org.apache.commons.logging.LogFactory;
 import org.cloudfoundry.identity.uaa.oauth.jwt.JwtHelper;
 import org.cloudfoundry.identity.uaa.oauth.token.IntrospectionClaims;
 import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.cloudfoundry.identity.uaa.util.TokenValidation;
 import org.springframework.security.oauth2.common.OAuth2AccessToken;
 import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
 import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
@@ -15,6 +16,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.Map;
 
 import static org.springframework.web.bind.annotation.RequestMethod.POST;
 
@@ -30,6 +32,19 @@ public class IntrospectEndpoint {
         IntrospectionClaims introspectionClaims = new IntrospectionClaims();
 
         try {
+            if (resourceServerTokenServices instanceof UaaTokenServices) {
+                //validate once, and share the decoded token, client and user between both steps
+                UaaTokenServices uaaTokenServices = (UaaTokenServices) resourceServerTokenServices;
+                TokenValidation tokenValidation = uaaTokenServices.validateAccessToken(token);
+                if (uaaTokenServices.readAccessToken(tokenValidation).isExpired()) {
+                    introspectionClaims.setActive(false);
+                    return introspectionClaims;
+                }
+                uaaTokenServices.loadAuthentication(tokenValidation);
+                introspectionClaims = getClaims(tokenValidation.getClaims());
+                introspectionClaims.setActive(true);
+                return introspectionClaims;
+            }
             OAuth2AccessToken oAuth2AccessToken = resourceServerTokenServices.readAccessToken(token);
             if (oAuth2AccessToken.isExpired()) {
                 introspectionClaims.setActive(false);
@@ -53,6 +68,15 @@ public class IntrospectEndpoint {
     }
 
 
+    private IntrospectionClaims getClaims(Map<String, Object> tokenClaims) {
+        try {
+            return JsonUtils.convertValue(tokenClaims, IntrospectionClaims.class);
+        } catch (JsonUtils.JsonUtilException e) {
+            logger.error("Can't parse introspection claims in token. Is it a valid JSON?");
+            throw new InvalidTokenException("Cannot read token claims", e);
+        }
+    }
+
     private IntrospectionClaims getClaimsForToken(String token) {
         org.springframework.security.jwt.Jwt tokenJwt;
         tokenJwt = JwtHelper.decode(token);
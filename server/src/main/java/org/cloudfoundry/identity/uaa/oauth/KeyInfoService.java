@@ -14,19 +14,31 @@
  */
 package org.cloudfoundry.identity.uaa.oauth;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.cloudfoundry.identity.uaa.impl.config.LegacyTokenKey;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneConfiguration;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.springframework.util.StringUtils;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.cloudfoundry.identity.uaa.util.UaaUrlUtils.addSubdomainToUrl;
 
 public class KeyInfoService {
     private String uaaBaseURL;
 
+    //parsing keys is expensive and zones are read for every request, so
+    //key infos are shared by the key material and URL they were built from
+    private final Cache<List<String>, KeyInfo> keyInfos = CacheBuilder.newBuilder()
+        .maximumSize(1000)
+        .expireAfterAccess(1, TimeUnit.HOURS)
+        .build();
+
     public KeyInfoService(String uaaBaseURL) {
         this.uaaBaseURL = uaaBaseURL;
     }
@@ -43,8 +55,7 @@ public class KeyInfoService {
 
         Map<String, KeyInfo> keys = new HashMap<>();
         for (Map.Entry<String, String> entry : config.getTokenPolicy().getKeys().entrySet()) {
-            KeyInfo keyInfo = KeyInfoBuilder.build(entry.getKey(), entry.getValue(), addSubdomainToUrl(uaaBaseURL));
-            keys.put(entry.getKey(), keyInfo);
+            keys.put(entry.getKey(), getKeyInfo(entry.getKey(), entry.getValue(), addSubdomainToUrl(uaaBaseURL)));
         }
 
         if (keys.isEmpty()) {
@@ -54,6 +65,16 @@ public class KeyInfoService {
         return keys;
     }
 
+    private KeyInfo getKeyInfo(String keyId, String signingKey, String url) {
+        List<String> cacheKey = Arrays.asList(keyId, signingKey, url);
+        KeyInfo keyInfo = keyInfos.getIfPresent(cacheKey);
+        if (keyInfo == null) {
+            keyInfo = KeyInfoBuilder.build(keyId, signingKey, url);
+            keyInfos.put(cacheKey, keyInfo);
+        }
+        return keyInfo;
+    }
+
     public KeyInfo getActiveKey() {
         return getKeys().get(getActiveKeyId());
     }
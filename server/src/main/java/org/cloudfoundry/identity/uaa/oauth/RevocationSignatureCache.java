@@ -0,0 +1,136 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.oauth;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudfoundry.identity.uaa.account.event.PasswordChangeEvent;
+import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.client.event.AbstractClientAdminEvent;
+import org.cloudfoundry.identity.uaa.oauth.client.ClientConstants;
+import org.cloudfoundry.identity.uaa.oauth.event.TokenRevocationEvent;
+import org.cloudfoundry.identity.uaa.scim.event.UserModifiedEvent;
+import org.cloudfoundry.identity.uaa.user.UaaUser;
+import org.cloudfoundry.identity.uaa.util.UaaTokenUtils;
+import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.springframework.context.ApplicationListener;
+import org.springframework.security.oauth2.provider.ClientDetails;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the revocation signatures of a user and client, one per client secret, so
+ * token validation does not hash every secret on every call.
+ * <p>
+ * Entries are keyed by ids, modification times and revocation salts only, never by
+ * passwords or client secrets. A change to the password, the email or username, the
+ * salt of the user, or to the secrets or token salt of the client changes the key.
+ * Changes made on this instance also clear the cache through their events, which covers
+ * two changes that fall on the same database timestamp. Users or clients without a
+ * modification time are not cached.
+ */
+public class RevocationSignatureCache implements ApplicationListener<AbstractUaaEvent> {
+
+    private static final String CLIENT_LAST_MODIFIED = "lastModified";
+
+    private final Cache<List<Object>, List<String>> signatures;
+    //bumped on every invalidation, so that signatures computed before it are not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public RevocationSignatureCache(int cacheSize) {
+        this.signatures = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * @return the revocation signatures for each secret of the client, or the single
+     * signature without a secret for a client that has none
+     */
+    public List<String> getSignatures(ClientDetails client, UaaUser user) {
+        List<Object> key = getKey(client, user);
+        if (key == null) {
+            return computeSignatures(client, user);
+        }
+        List<String> result = signatures.getIfPresent(key);
+        if (result == null) {
+            long started = generation.get();
+            result = computeSignatures(client, user);
+            signatures.put(key, result);
+            if (generation.get() != started) {
+                signatures.invalidate(key);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void onApplicationEvent(AbstractUaaEvent event) {
+        if (event instanceof UserModifiedEvent ||
+            event instanceof PasswordChangeEvent ||
+            event instanceof TokenRevocationEvent ||
+            event instanceof AbstractClientAdminEvent ||
+            event instanceof EntityDeletedEvent) {
+            generation.incrementAndGet();
+            signatures.invalidateAll();
+        }
+    }
+
+    protected static List<String> computeSignatures(ClientDetails client, UaaUser user) {
+        if (client.getClientSecret() == null) {
+            return Collections.singletonList(UaaTokenUtils.getRevocableTokenSignature(client, null, user));
+        }
+        List<String> result = new ArrayList<>();
+        for (String clientSecret : client.getClientSecret().split(" ")) {
+            result.add(UaaTokenUtils.getRevocableTokenSignature(client, clientSecret, user));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static List<Object> getKey(ClientDetails client, UaaUser user) {
+        Object clientModified = client.getAdditionalInformation().get(CLIENT_LAST_MODIFIED);
+        if (!(clientModified instanceof Date)) {
+            return null;
+        }
+        if (user == null) {
+            return Arrays.asList(
+                IdentityZoneHolder.get().getId(),
+                client.getClientId(),
+                ((Date) clientModified).getTime(),
+                client.getAdditionalInformation().get(ClientConstants.TOKEN_SALT)
+            );
+        }
+        if (user.getModified() == null) {
+            return null;
+        }
+        return Arrays.asList(
+            IdentityZoneHolder.get().getId(),
+            client.getClientId(),
+            ((Date) clientModified).getTime(),
+            client.getAdditionalInformation().get(ClientConstants.TOKEN_SALT),
+            user.getId(),
+            user.getModified().getTime(),
+            user.getPasswordLastModified() == null ? null : user.getPasswordLastModified().getTime(),
+            user.getSalt(),
+            user.getUsername(),
+            user.getEmail()
+        );
+    }
+}
@@ -12,11 +12,14 @@
  *******************************************************************************/
 package org.cloudfoundry.identity.uaa.oauth;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.cloudfoundry.identity.uaa.oauth.token.VerificationKeyResponse;
 import org.cloudfoundry.identity.uaa.oauth.token.VerificationKeysListResponse;
-import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -31,7 +34,7 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.security.Principal;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -47,23 +50,29 @@ public class TokenKeyEndpoint {
 
     protected final Log logger = LogFactory.getLog(getClass());
     private KeyInfoService keyInfoService;
+    private int cacheMaxAge = 0;
+    private final Cache<List<String>, KeysResponse> keysResponses = CacheBuilder.newBuilder()
+        .maximumSize(1000)
+        .build();
 
     public TokenKeyEndpoint(KeyInfoService keyInfoService) {
         this.keyInfoService = keyInfoService;
     }
 
+    /**
+     * @param cacheMaxAge how long, in seconds, clients may cache the keys without revalidating them.
+     *                    Zero, the default, sends no Cache-Control header.
+     */
+    public void setCacheMaxAge(int cacheMaxAge) {
+        this.cacheMaxAge = cacheMaxAge;
+    }
+
     @RequestMapping(value = "/token_key", method = RequestMethod.GET)
     @ResponseBody
     public ResponseEntity<VerificationKeyResponse> getKey(Principal principal,
             @RequestHeader(value = "If-None-Match", required = false, defaultValue = "NaN") String eTag) {
-        String lastModified = ((Long) IdentityZoneHolder.get().getLastModified().getTime()).toString();
-        if (unmodifiedResource(eTag, lastModified)) {
-            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
-        }
-
-        HttpHeaders header = new HttpHeaders();
-        header.put("ETag", Collections.singletonList(lastModified));
-        return new ResponseEntity<>(getKey(principal), header, HttpStatus.OK);
+        VerificationKeyResponse key = getKey(principal);
+        return getResponse(key, getETag(key), eTag);
     }
 
 
@@ -71,14 +80,20 @@ public class TokenKeyEndpoint {
     @ResponseBody
     public ResponseEntity<VerificationKeysListResponse> getKeys(Principal principal,
             @RequestHeader(value = "If-None-Match", required = false, defaultValue = "NaN") String eTag) {
-        String lastModified = ((Long) IdentityZoneHolder.get().getLastModified().getTime()).toString();
-        if (unmodifiedResource(eTag, lastModified)) {
-            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
-        }
+        KeysResponse keys = getKeysResponse(principal);
+        return getResponse(keys.response, keys.eTag, eTag);
+    }
 
+    private <T> ResponseEntity<T> getResponse(T body, String currentETag, String eTag) {
         HttpHeaders header = new HttpHeaders();
-        header.put("ETag", Collections.singletonList(lastModified));
-        return new ResponseEntity<>(getKeys(principal), header, HttpStatus.OK);
+        header.setETag(currentETag);
+        if (cacheMaxAge > 0) {
+            header.setCacheControl("max-age=" + cacheMaxAge);
+        }
+        if (unmodifiedResource(eTag, currentETag)) {
+            return new ResponseEntity<>(header, HttpStatus.NOT_MODIFIED);
+        }
+        return new ResponseEntity<>(body, header, HttpStatus.OK);
     }
 
     /**
@@ -105,8 +120,12 @@ public class TokenKeyEndpoint {
         return key.getJwkMap();
     }
 
-    private boolean unmodifiedResource(String eTag, String lastModified) {
-        return !eTag.equals("NaN") && lastModified.equals(eTag);
+    private boolean unmodifiedResource(String eTag, String currentETag) {
+        return !eTag.equals("NaN") && currentETag.equals(eTag);
+    }
+
+    private static String getETag(Object response) {
+        return "\"" + DigestUtils.sha256Hex(JsonUtils.writeValueAsBytes(response)) + "\"";
     }
 
     /**
@@ -119,13 +138,33 @@ public class TokenKeyEndpoint {
      * @return the key used to verify tokens, wrapped in keys array
      */
     public VerificationKeysListResponse getKeys(Principal principal) {
+        return getKeysResponse(principal).response;
+    }
+
+    /**
+     * The response only changes with the keys it lists, so it is built, and its ETag hashed,
+     * once per distinct set of keys rather than on every request.
+     */
+    private KeysResponse getKeysResponse(Principal principal) {
         boolean includeSymmetric = includeSymmetricalKeys(principal);
-        Map<String, KeyInfo> keys = keyInfoService.getKeys();
-        List<VerificationKeyResponse> keyResponses = keys.values().stream()
+        List<KeyInfo> keys = keyInfoService.getKeys().values().stream()
                 .filter(k -> includeSymmetric || RSA.name().equals(k.type()))
-                .map(TokenKeyEndpoint::getVerificationKeyResponse)
                 .collect(Collectors.toList());
-        return new VerificationKeysListResponse(keyResponses);
+        List<String> cacheKey = new ArrayList<>();
+        for (KeyInfo key : keys) {
+            cacheKey.add(key.keyId());
+            cacheKey.add(key.type());
+            cacheKey.add(key.verifierKey());
+        }
+        KeysResponse result = keysResponses.getIfPresent(cacheKey);
+        if (result == null) {
+            List<VerificationKeyResponse> keyResponses = keys.stream()
+                    .map(TokenKeyEndpoint::getVerificationKeyResponse)
+                    .collect(Collectors.toList());
+            result = new KeysResponse(new VerificationKeysListResponse(keyResponses));
+            keysResponses.put(cacheKey, result);
+        }
+        return result;
     }
 
     protected boolean includeSymmetricalKeys(Principal principal) {
@@ -146,4 +185,13 @@ public class TokenKeyEndpoint {
         return false;
     }
 
+    private static class KeysResponse {
+        private final VerificationKeysListResponse response;
+        private final String eTag;
+
+        private KeysResponse(VerificationKeysListResponse response) {
+            this.response = response;
+            this.eTag = getETag(response);
+        }
+    }
 }
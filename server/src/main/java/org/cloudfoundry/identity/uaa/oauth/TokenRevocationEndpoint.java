@@ -22,7 +22,6 @@ import org.cloudfoundry.identity.uaa.oauth.client.ClientConstants;
 import org.cloudfoundry.identity.uaa.oauth.event.TokenRevocationEvent;
 import org.cloudfoundry.identity.uaa.oauth.token.RevocableToken;
 import org.cloudfoundry.identity.uaa.oauth.token.RevocableTokenProvisioning;
-import org.cloudfoundry.identity.uaa.scim.ScimUser;
 import org.cloudfoundry.identity.uaa.scim.ScimUserProvisioning;
 import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceNotFoundException;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
@@ -73,9 +72,7 @@ public class TokenRevocationEndpoint implements ApplicationEventPublisherAware {
     public ResponseEntity<Void> revokeTokensForUser(@PathVariable String userId) {
         logger.debug("Revoking tokens for user: " + userId);
         String zoneId = IdentityZoneHolder.get().getId();
-        ScimUser user = userProvisioning.retrieve(userId, zoneId);
-        user.setSalt(generator.generate());
-        userProvisioning.update(userId, user, zoneId);
+        userProvisioning.updateSalt(userId, generator.generate(), zoneId);
         eventPublisher.publishEvent(new TokenRevocationEvent(userId, null, zoneId, SecurityContextHolder.getContext().getAuthentication()));
         logger.debug("Tokens revoked for user: " + userId);
         return new ResponseEntity<>(OK);
@@ -85,10 +82,7 @@ public class TokenRevocationEndpoint implements ApplicationEventPublisherAware {
     public ResponseEntity<Void> revokeTokensForUserAndClient(@PathVariable String userId, @PathVariable String clientId) {
         String zoneId = IdentityZoneHolder.get().getId();
         logger.debug("Revoking tokens for user " + userId + " and client " + clientId);
-        List<RevocableToken> tokens = tokenProvisioning.getUserTokens(userId, clientId, zoneId);
-        for (RevocableToken token: tokens) {
-            tokenProvisioning.delete(token.getTokenId(), -1, zoneId);
-        }
+        tokenProvisioning.deleteByUserAndClient(userId, clientId, zoneId);
         eventPublisher.publishEvent(new TokenRevocationEvent(userId, clientId, zoneId, SecurityContextHolder.getContext().getAuthentication()));
         logger.debug("Tokens revoked for user " + userId + " and client " + clientId);
         return new ResponseEntity<>(OK);
@@ -5,14 +5,11 @@ import org.cloudfoundry.identity.uaa.oauth.token.RevocableTokenProvisioning;
 import org.cloudfoundry.identity.uaa.user.UaaUser;
 import org.cloudfoundry.identity.uaa.user.UaaUserDatabase;
 import org.cloudfoundry.identity.uaa.util.TokenValidation;
-import org.cloudfoundry.identity.uaa.util.UaaTokenUtils;
 import org.cloudfoundry.identity.uaa.zone.ClientServicesExtension;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.security.oauth2.provider.ClientDetails;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import static org.cloudfoundry.identity.uaa.util.TokenValidation.buildAccessTokenValidator;
@@ -24,6 +21,7 @@ public class TokenValidationService {
     private UaaUserDatabase userDatabase;
     private ClientServicesExtension clientServicesExtension;
     private KeyInfoService keyInfoService;
+    private RevocationSignatureCache revocationSignatureCache;
 
     public TokenValidationService(RevocableTokenProvisioning revocableTokenProvisioning,
                                   TokenEndpointBuilder tokenEndpointBuilder,
@@ -38,8 +36,8 @@ public class TokenValidationService {
     }
 
     public TokenValidation validateToken(String token, boolean isAccessToken) {
+        RevocableToken revocableToken = null;
         if (!UaaTokenUtils.isJwtToken(token)) {
-            RevocableToken revocableToken;
             try {
                 revocableToken = revocableTokenProvisioning.retrieve(token, IdentityZoneHolder.get().getId());
             } catch (EmptyResultDataAccessException ex) {
@@ -51,7 +49,7 @@ public class TokenValidationService {
         TokenValidation tokenValidation = isAccessToken ?
                 buildAccessTokenValidator(token, keyInfoService) : buildRefreshTokenValidator(token, keyInfoService);
         tokenValidation
-                .checkRevocableTokenStore(revocableTokenProvisioning)
+                .checkRevocableTokenStore(revocableTokenProvisioning, revocableToken)
                 .checkIssuer(tokenEndpointBuilder.getTokenEndpoint());
 
         ClientDetails client = tokenValidation.getClientDetails(clientServicesExtension);
@@ -59,23 +57,19 @@ public class TokenValidationService {
         tokenValidation
                 .checkClientAndUser(client, user);
 
-        List<String> clientSecrets = new ArrayList<>();
-        List<String> revocationSignatureList = new ArrayList<>();
-        if (client.getClientSecret() != null) {
-            clientSecrets.addAll(Arrays.asList(client.getClientSecret().split(" ")));
-        } else {
-            revocationSignatureList.add(UaaTokenUtils.getRevocableTokenSignature(client, null, user));
-        }
-
-        for (String clientSecret : clientSecrets) {
-            revocationSignatureList.add(UaaTokenUtils.getRevocableTokenSignature(client, clientSecret, user));
-        }
+        List<String> revocationSignatureList = revocationSignatureCache == null ?
+            RevocationSignatureCache.computeSignatures(client, user) :
+            revocationSignatureCache.getSignatures(client, user);
 
         tokenValidation = tokenValidation.checkRevocationSignature(revocationSignatureList);
 
         return tokenValidation;
     }
 
+    public void setRevocationSignatureCache(RevocationSignatureCache revocationSignatureCache) {
+        this.revocationSignatureCache = revocationSignatureCache;
+    }
+
     public void setUserDatabase(UaaUserDatabase userDatabase) {
         this.userDatabase = userDatabase;
     }
@@ -426,7 +426,7 @@ public class UaaTokenServices implements AuthorizationServerTokenServices, Resou
 
         compositeToken.setAdditionalInformation(info);
 
-        String content;
+        byte[] content;
         Map<String, ?> jwtAccessToken = createJWTAccessToken(
                 compositeToken,
                 userId,
@@ -441,7 +441,7 @@ public class UaaTokenServices implements AuthorizationServerTokenServices, Resou
                 isRevocable,
                 additionalRootClaims);
         try {
-            content = JsonUtils.writeValueAsString(jwtAccessToken);
+            content = JsonUtils.writeValueAsBytes(jwtAccessToken);
         } catch (JsonUtils.JsonUtilException e) {
             throw new IllegalStateException("Cannot convert access token to JSON", e);
         }
@@ -450,9 +450,9 @@ public class UaaTokenServices implements AuthorizationServerTokenServices, Resou
         BaseClientDetails clientDetails = (BaseClientDetails) clientDetailsService.loadClientByClientId(clientId);
 
         if (idTokenGranter.shouldSendIdToken(userId, clientDetails, requestedScopes, grantType, responseTypes)) {
-            String idTokenContent;
+            byte[] idTokenContent;
             try {
-                idTokenContent = JsonUtils.writeValueAsString(idTokenCreator.create(clientId, userId, userAuthenticationData));
+                idTokenContent = JsonUtils.writeValueAsBytes(idTokenCreator.create(clientId, userId, userAuthenticationData));
             } catch (RuntimeException | IdTokenCreationException e) {
                 throw new IllegalStateException("Cannot convert id token to JSON");
             }
@@ -805,13 +805,21 @@ public class UaaTokenServices implements AuthorizationServerTokenServices, Resou
             throw new InvalidTokenException("Invalid access token value, must be at least 30 characters");
         }
 
-        TokenValidation tokenValidation =
-          tokenValidationService.validateToken(accessToken, true)
-          .checkJti();
+        return loadAuthentication(validateAccessToken(accessToken));
+    }
 
+    /**
+     * Validates an access token once, so that {@link #readAccessToken(TokenValidation)} and
+     * {@link #loadAuthentication(TokenValidation)} can share the decoded token, its client and its user.
+     */
+    public TokenValidation validateAccessToken(String accessToken) {
+        return tokenValidationService.validateToken(accessToken, true).checkJti();
+    }
+
+    public OAuth2Authentication loadAuthentication(TokenValidation tokenValidation) throws AuthenticationException {
         Map<String, Object> claims = tokenValidation.getClaims();
 
-        accessToken = tokenValidation.getJwt().getEncoded();
+        String accessToken = tokenValidation.getJwt().getEncoded();
 
         // Check token expiry
         Long expiration = Long.valueOf(claims.get(EXP).toString());
@@ -850,7 +858,10 @@ public class UaaTokenServices implements AuthorizationServerTokenServices, Resou
         Authentication userAuthentication = null;
         // Is this a user token - minimum info is user_id
         if (claims.containsKey(USER_ID)) {
-            UaaUser user = userDatabase.retrieveUserById((String)claims.get(USER_ID));
+            UaaUser user = tokenValidation.getUserDetails(userDatabase);
+            if (user == null) {
+                user = userDatabase.retrieveUserById((String)claims.get(USER_ID));
+            }
             UaaPrincipal principal = new UaaPrincipal(user);
             userAuthentication = new UaaAuthentication(principal, UaaAuthority.USER_AUTHORITIES, null);
         } else {
@@ -878,11 +889,12 @@ public class UaaTokenServices implements AuthorizationServerTokenServices, Resou
      */
     @Override
     public OAuth2AccessToken readAccessToken(String accessToken) {
-        TokenValidation tokenValidation =
-                tokenValidationService.validateToken(accessToken, true).checkJti();
+        return readAccessToken(validateAccessToken(accessToken));
+    }
 
+    public OAuth2AccessToken readAccessToken(TokenValidation tokenValidation) {
         Map<String, Object> claims = tokenValidation.getClaims();
-        accessToken = tokenValidation.getJwt().getEncoded();
+        String accessToken = tokenValidation.getJwt().getEncoded();
 
         // Expiry is verified by check_token
         CompositeToken token = new CompositeToken(accessToken);
@@ -894,9 +906,8 @@ public class UaaTokenServices implements AuthorizationServerTokenServices, Resou
         if (null != scopes && scopes.size() > 0) {
             token.setScope(new HashSet<>(scopes));
         }
-        String clientId = (String)claims.get(CID);
         String userId = (String)claims.get(USER_ID);
-        BaseClientDetails client = (BaseClientDetails) clientDetailsService.loadClientByClientId(clientId, IdentityZoneHolder.get().getId());
+        BaseClientDetails client = (BaseClientDetails) tokenValidation.getClientDetails(clientDetailsService);
         // Only check user access tokens
         if (null != userId) {
             @SuppressWarnings("unchecked")
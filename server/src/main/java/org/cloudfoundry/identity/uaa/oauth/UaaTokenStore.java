@@ -21,12 +21,12 @@ import org.apache.commons.logging.LogFactory;
 import org.cloudfoundry.identity.uaa.authentication.UaaAuthentication;
 import org.cloudfoundry.identity.uaa.authentication.UaaAuthenticationDetails;
 import org.cloudfoundry.identity.uaa.authentication.UaaPrincipal;
+import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
 import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.cloudfoundry.identity.uaa.util.UaaStringUtils;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DeadlockLoserDataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.support.SqlLobValue;
@@ -46,6 +46,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -67,8 +68,24 @@ public class UaaTokenStore implements AuthorizationCodeServices {
     public static final String OAUTH2_REQUEST_REDIRECT_URI = "oauth2Request.redirectUri";
     public static final String OAUTH2_REQUEST_RESPONSE_TYPES = "oauth2Request.responseTypes";
 
+    //keys of the compact format, which nests objects instead of embedding them as JSON strings
+    //and leaves out empty values
+    protected static final String COMPACT_VERSION = "v";
+    protected static final String COMPACT_UAA_AUTHENTICATION = "ua";
+    protected static final String COMPACT_PRINCIPAL = "up";
+    protected static final String COMPACT_USER_AUTHORITIES = "uau";
+    protected static final String COMPACT_PARAMETERS = "rp";
+    protected static final String COMPACT_CLIENT_ID = "c";
+    protected static final String COMPACT_CLIENT_AUTHORITIES = "ca";
+    protected static final String COMPACT_APPROVED = "a";
+    protected static final String COMPACT_SCOPE = "s";
+    protected static final String COMPACT_RESOURCE_IDS = "r";
+    protected static final String COMPACT_REDIRECT_URI = "ru";
+    protected static final String COMPACT_RESPONSE_TYPES = "rt";
+
     protected static Log logger = LogFactory.getLog(UaaTokenStore.class);
 
+    private static final String[] CODE_COLUMNS = {"code", "user_id", "client_id", "expiresat", "created", "authentication"};
     private static final String SQL_SELECT_STATEMENT = "select code, user_id, client_id, expiresat, created, authentication from oauth_code where code = ?";
     private static final String SQL_INSERT_STATEMENT = "insert into oauth_code (code, user_id, client_id, expiresat, authentication, identity_zone_id) values (?, ?, ?, ?, ?, ?)";
     private static final String SQL_DELETE_STATEMENT = "delete from oauth_code where code = ?";
@@ -78,7 +95,9 @@ public class UaaTokenStore implements AuthorizationCodeServices {
     private final DataSource dataSource;
     private final long expirationTime;
     private final RandomValueStringGenerator generator = new RandomValueStringGenerator(10);
-    private final RowMapper rowMapper = new TokenCodeRowMapper();
+    private final RowMapper<TokenCode> rowMapper = new TokenCodeRowMapper();
+    private LimitSqlAdapter limitSqlAdapter;
+    private boolean compactFormat = false;
 
     private final AtomicLong lastClean = new AtomicLong(0);
 
@@ -91,6 +110,24 @@ public class UaaTokenStore implements AuthorizationCodeServices {
         this.expirationTime = expirationTime;
     }
 
+    /**
+     * @param limitSqlAdapter when the database can delete and return a row in one statement,
+     *                        codes are consumed with a single round trip
+     */
+    public void setLimitSqlAdapter(LimitSqlAdapter limitSqlAdapter) {
+        this.limitSqlAdapter = limitSqlAdapter;
+    }
+
+    /**
+     * Codes in both formats are always read. Instances before the compact format cannot read
+     * it, so it should only be written once all instances have been updated.
+     *
+     * @param compactFormat whether new codes are written in the compact format
+     */
+    public void setCompactFormat(boolean compactFormat) {
+        this.compactFormat = compactFormat;
+    }
+
     @Override
     public String createAuthorizationCode(OAuth2Authentication authentication) {
         final int max_tries = 3;
@@ -126,28 +163,41 @@ public class UaaTokenStore implements AuthorizationCodeServices {
     public OAuth2Authentication consumeAuthorizationCode(String code) throws InvalidGrantException {
         performExpirationClean();
         JdbcTemplate template = new JdbcTemplate(dataSource);
-        try {
-            TokenCode tokenCode = (TokenCode) template.queryForObject(SQL_SELECT_STATEMENT, rowMapper, code);
-            if (tokenCode != null) {
-                try {
-                    if (tokenCode.isExpired()) {
-                        logger.debug("[oauth_code] Found code, but it expired:"+tokenCode);
-                        throw new InvalidGrantException("Authorization code expired: " + code);
-                    } else if (tokenCode.getExpiresAt() == 0) {
-                        return SerializationUtils.deserialize(tokenCode.getAuthentication());
-                    } else {
-                        return deserializeOauth2Authentication(tokenCode.getAuthentication());
-                    }
-                } finally {
-                    template.update(SQL_DELETE_STATEMENT, code);
-                }
+        TokenCode tokenCode = removeTokenCode(template, code);
+        if (tokenCode != null) {
+            if (tokenCode.isExpired()) {
+                logger.debug("[oauth_code] Found code, but it expired:"+tokenCode);
+                throw new InvalidGrantException("Authorization code expired: " + code);
+            } else if (tokenCode.getExpiresAt() == 0) {
+                return SerializationUtils.deserialize(tokenCode.getAuthentication());
+            } else {
+                return deserializeOauth2Authentication(tokenCode.getAuthentication());
             }
-        }catch (EmptyResultDataAccessException x) {
         }
         throw new InvalidGrantException("Invalid authorization code: " + code);
     }
 
+    /**
+     * Deletes the code and returns it. Only the caller whose delete removed the row
+     * gets the code, so concurrent redemptions of the same code yield it once.
+     */
+    protected TokenCode removeTokenCode(JdbcTemplate template, String code) {
+        String deleteReturning = limitSqlAdapter == null ? null : limitSqlAdapter.getDeleteReturningQuery("oauth_code", CODE_COLUMNS, "code = ?");
+        if (deleteReturning != null) {
+            List<TokenCode> deleted = template.query(deleteReturning, rowMapper, code);
+            return deleted.isEmpty() ? null : deleted.get(0);
+        }
+        List<TokenCode> codes = template.query(SQL_SELECT_STATEMENT, rowMapper, code);
+        if (codes.isEmpty()) {
+            return null;
+        }
+        return template.update(SQL_DELETE_STATEMENT, code) == 1 ? codes.get(0) : null;
+    }
+
     protected byte[] serializeOauth2Authentication(OAuth2Authentication auth2Authentication) {
+        if (compactFormat) {
+            return JsonUtils.writeValueAsBytes(toCompactMap(auth2Authentication));
+        }
         Authentication userAuthentication = auth2Authentication.getUserAuthentication();
         HashMap<String, Object> data = new HashMap<>();
         if (userAuthentication!=null) {
@@ -175,8 +225,60 @@ public class UaaTokenStore implements AuthorizationCodeServices {
         return JsonUtils.writeValueAsBytes(data);
     }
 
+    /**
+     * @return the authentication in the compact format, ready to be written as JSON
+     */
+    public static Map<String, Object> toCompactMap(OAuth2Authentication auth2Authentication) {
+        Authentication userAuthentication = auth2Authentication.getUserAuthentication();
+        OAuth2Request request = auth2Authentication.getOAuth2Request();
+        HashMap<String, Object> data = new HashMap<>();
+        data.put(COMPACT_VERSION, 2);
+        if (userAuthentication!=null) {
+            if (userAuthentication instanceof UaaAuthentication) {
+                data.put(COMPACT_UAA_AUTHENTICATION, userAuthentication);
+            } else {
+                data.put(COMPACT_PRINCIPAL, userAuthentication.getPrincipal());
+                putIfNotEmpty(data, COMPACT_USER_AUTHORITIES, UaaStringUtils.getStringsFromAuthorities(userAuthentication.getAuthorities()));
+            }
+        }
+        putIfNotEmpty(data, COMPACT_PARAMETERS, request.getRequestParameters());
+        data.put(COMPACT_CLIENT_ID, request.getClientId());
+        putIfNotEmpty(data, COMPACT_CLIENT_AUTHORITIES, UaaStringUtils.getStringsFromAuthorities(request.getAuthorities()));
+        if (request.isApproved()) {
+            data.put(COMPACT_APPROVED, true);
+        }
+        putIfNotEmpty(data, COMPACT_SCOPE, request.getScope());
+        putIfNotEmpty(data, COMPACT_RESOURCE_IDS, request.getResourceIds());
+        if (request.getRedirectUri() != null) {
+            data.put(COMPACT_REDIRECT_URI, request.getRedirectUri());
+        }
+        putIfNotEmpty(data, COMPACT_RESPONSE_TYPES, request.getResponseTypes());
+
+        //currently not serializing any of the
+        //Map<String, Serializable > extensionProperties
+        if (request.getExtensions() != null && request.getExtensions().size()>0) {
+            logger.warn("[oauth_code] Unable to serialize extensions:"+request.getExtensions());
+        }
+        return data;
+    }
+
+    private static void putIfNotEmpty(Map<String, Object> data, String key, Collection<?> value) {
+        if (value != null && !value.isEmpty()) {
+            data.put(key, value);
+        }
+    }
+
+    private static void putIfNotEmpty(Map<String, Object> data, String key, Map<?, ?> value) {
+        if (value != null && !value.isEmpty()) {
+            data.put(key, value);
+        }
+    }
+
     protected OAuth2Authentication deserializeOauth2Authentication(byte[] data) {
         Map<String,Object> map = JsonUtils.readValue(data, new TypeReference<Map<String,Object>>() {});
+        if (map.containsKey(COMPACT_VERSION)) {
+            return fromCompactMap(map);
+        }
         Authentication userAuthentication = null;
         if (map.get(USER_AUTHENTICATION_UAA_AUTHENTICATION) != null) {
             userAuthentication = JsonUtils.readValue((String)map.get(USER_AUTHENTICATION_UAA_AUTHENTICATION), UaaAuthentication.class);
@@ -211,6 +313,40 @@ public class UaaTokenStore implements AuthorizationCodeServices {
         return new OAuth2Authentication(request, userAuthentication);
     }
 
+    /**
+     * @param map the compact format, as read from JSON
+     */
+    public static OAuth2Authentication fromCompactMap(Map<String,Object> map) {
+        Authentication userAuthentication = null;
+        if (map.get(COMPACT_UAA_AUTHENTICATION) != null) {
+            userAuthentication = JsonUtils.convertValue(map.get(COMPACT_UAA_AUTHENTICATION), UaaAuthentication.class);
+        } else if (map.get(COMPACT_PRINCIPAL) != null) {
+            UaaPrincipal principal = JsonUtils.convertValue(map.get(COMPACT_PRINCIPAL), UaaPrincipal.class);
+            Collection<? extends GrantedAuthority> authorities = UaaStringUtils.getAuthoritiesFromStrings(getCollection(map, COMPACT_USER_AUTHORITIES));
+            userAuthentication = new UaaAuthentication(principal, (List<? extends GrantedAuthority>) authorities, UaaAuthenticationDetails.UNKNOWN);
+        }
+
+        Map<String,String> requestParameters = (Map<String, String>) map.get(COMPACT_PARAMETERS);
+        OAuth2Request request = new OAuth2Request(
+            requestParameters == null ? new HashMap<>() : requestParameters,
+            (String) map.get(COMPACT_CLIENT_ID),
+            UaaStringUtils.getAuthoritiesFromStrings(getCollection(map, COMPACT_CLIENT_AUTHORITIES)),
+            Boolean.TRUE.equals(map.get(COMPACT_APPROVED)),
+            new HashSet<>(getCollection(map, COMPACT_SCOPE)),
+            new HashSet<>(getCollection(map, COMPACT_RESOURCE_IDS)),
+            (String) map.get(COMPACT_REDIRECT_URI),
+            new HashSet<>(getCollection(map, COMPACT_RESPONSE_TYPES)),
+            new HashMap<String,Serializable>()
+        );
+
+        return new OAuth2Authentication(request, userAuthentication);
+    }
+
+    private static Collection<String> getCollection(Map<String, Object> map, String key) {
+        Collection<String> value = (Collection<String>) map.get(key);
+        return value == null ? Collections.emptySet() : value;
+    }
+
     protected void performExpirationClean() {
         long last = lastClean.get();
         //check if we should expire again
@@ -14,8 +14,6 @@
  */
 package org.cloudfoundry.identity.uaa.oauth.jwt;
 
-import org.springframework.security.jwt.crypto.sign.MacSigner;
-import org.springframework.security.jwt.crypto.sign.RsaVerifier;
 import org.springframework.security.jwt.crypto.sign.SignatureVerifier;
 
 public class CommonSignatureVerifier implements SignatureVerifier {
@@ -25,9 +23,9 @@ public class CommonSignatureVerifier implements SignatureVerifier {
         if(verificationKey == null) {
             throw new IllegalArgumentException("verificationKey cannot be null");
         } else if(isAssymetricKey(verificationKey)) {
-            delegate = new RsaVerifier(verificationKey);
+            delegate = JcaSigner.rsa(verificationKey);
         } else {
-            delegate = new MacSigner(verificationKey);
+            delegate = JcaSigner.hmac(verificationKey);
         }
     }
 
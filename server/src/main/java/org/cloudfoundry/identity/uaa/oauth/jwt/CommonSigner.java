@@ -14,11 +14,8 @@
  */
 package org.cloudfoundry.identity.uaa.oauth.jwt;
 
-import org.springframework.security.jwt.crypto.sign.MacSigner;
-import org.springframework.security.jwt.crypto.sign.RsaSigner;
-
 public class CommonSigner implements Signer {
-    private final org.springframework.security.jwt.crypto.sign.Signer delegate;
+    private final JcaSigner delegate;
     private final String keyId;
     private String keyURL;
 
@@ -26,9 +23,9 @@ public class CommonSigner implements Signer {
         if (signingKey == null) {
             throw new IllegalArgumentException(signingKey);
         } else if (isAssymetricKey(signingKey)) {
-            delegate = new RsaSigner(signingKey);
+            delegate = JcaSigner.rsa(signingKey);
         } else {
-            delegate = new MacSigner(signingKey);
+            delegate = JcaSigner.hmac(signingKey);
         }
 
         this.keyId = keyId;
@@ -0,0 +1,183 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+package org.cloudfoundry.identity.uaa.oauth.jwt;
+
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.cloudfoundry.identity.uaa.cypto.CryptoProvider;
+import org.springframework.security.jwt.crypto.sign.InvalidSignatureException;
+import org.springframework.security.jwt.crypto.sign.SignatureVerifier;
+import org.springframework.security.jwt.crypto.sign.Signer;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.KeySpec;
+import java.security.spec.RSAPrivateCrtKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.springframework.security.jwt.codec.Codecs.b64Decode;
+import static org.springframework.security.jwt.codec.Codecs.utf8Encode;
+
+/**
+ * Signs and verifies with RSA or HMAC keys, using the per thread {@link Mac} and
+ * {@link Signature} instances of {@link CryptoProvider} instead of looking them up
+ * on every call. Keys are parsed once, when the signer is created.
+ */
+public class JcaSigner implements Signer, SignatureVerifier {
+    public static final String DEFAULT_RSA_ALGORITHM = "SHA256withRSA";
+    public static final String DEFAULT_HMAC_ALGORITHM = "HMACSHA256";
+
+    private static final Pattern PEM_DATA = Pattern.compile("-----BEGIN (.*)-----(.*)-----END (.*)-----", Pattern.DOTALL);
+
+    private final String algorithm;
+    private final SecretKey secretKey;
+    private final PrivateKey privateKey;
+    private final PublicKey publicKey;
+
+    private JcaSigner(String algorithm, SecretKey secretKey, PrivateKey privateKey, PublicKey publicKey) {
+        this.algorithm = algorithm;
+        this.secretKey = secretKey;
+        this.privateKey = privateKey;
+        this.publicKey = publicKey;
+    }
+
+    public static JcaSigner hmac(String key) {
+        return new JcaSigner(DEFAULT_HMAC_ALGORITHM, new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), DEFAULT_HMAC_ALGORITHM), null, null);
+    }
+
+    public static JcaSigner rsa(KeyPair keyPair) {
+        return new JcaSigner(DEFAULT_RSA_ALGORITHM, null, keyPair.getPrivate(), keyPair.getPublic());
+    }
+
+    /**
+     * @param pemKey a PEM encoded RSA private or public key. A signer created from
+     *               a public key can only verify.
+     */
+    public static JcaSigner rsa(String pemKey) {
+        return rsa(parseKeyPair(pemKey));
+    }
+
+    @Override
+    public String algorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public byte[] sign(byte[] bytes) {
+        try {
+            if (secretKey != null) {
+                Mac mac = CryptoProvider.getMac(algorithm);
+                mac.init(secretKey);
+                return mac.doFinal(bytes);
+            }
+            if (privateKey == null) {
+                throw new IllegalStateException("No private key available for signing.");
+            }
+            Signature signature = CryptoProvider.getSignature(algorithm);
+            signature.initSign(privateKey);
+            signature.update(bytes);
+            return signature.sign();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void verify(byte[] content, byte[] sig) {
+        boolean valid;
+        try {
+            if (secretKey != null) {
+                valid = MessageDigest.isEqual(sign(content), sig);
+            } else {
+                Signature signature = CryptoProvider.getSignature(algorithm);
+                signature.initVerify(publicKey);
+                signature.update(content);
+                valid = signature.verify(sig);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+        if (!valid) {
+            throw new InvalidSignatureException(secretKey != null ? "Calculated signature did not match actual value" : "RSA Signature did not match content");
+        }
+    }
+
+    public static KeyPair parseKeyPair(String pemData) {
+        Matcher m = PEM_DATA.matcher(pemData.trim());
+
+        if (!m.matches()) {
+            throw new IllegalArgumentException("String is not PEM encoded data");
+        }
+
+        String type = m.group(1);
+        final byte[] content = b64Decode(utf8Encode(m.group(2)));
+
+        PublicKey publicKey;
+        PrivateKey privateKey = null;
+
+        try {
+            KeyFactory fact = KeyFactory.getInstance("RSA");
+            if (type.equals("RSA PRIVATE KEY")) {
+                ASN1Sequence seq = ASN1Sequence.getInstance(content);
+                if (seq.size() != 9) {
+                    throw new IllegalArgumentException("Invalid RSA Private Key ASN1 sequence.");
+                }
+                org.bouncycastle.asn1.pkcs.RSAPrivateKey key = org.bouncycastle.asn1.pkcs.RSAPrivateKey.getInstance(seq);
+                RSAPublicKeySpec pubSpec = new RSAPublicKeySpec(key.getModulus(), key.getPublicExponent());
+                RSAPrivateCrtKeySpec privSpec = new RSAPrivateCrtKeySpec(
+                  key.getModulus(),
+                  key.getPublicExponent(),
+                  key.getPrivateExponent(),
+                  key.getPrime1(),
+                  key.getPrime2(),
+                  key.getExponent1(),
+                  key.getExponent2(),
+                  key.getCoefficient()
+                );
+                publicKey = fact.generatePublic(pubSpec);
+                privateKey = fact.generatePrivate(privSpec);
+            } else if (type.equals("PUBLIC KEY")) {
+                KeySpec keySpec = new X509EncodedKeySpec(content);
+                publicKey = fact.generatePublic(keySpec);
+            } else if (type.equals("RSA PUBLIC KEY")) {
+                ASN1Sequence seq = ASN1Sequence.getInstance(content);
+                org.bouncycastle.asn1.pkcs.RSAPublicKey key = org.bouncycastle.asn1.pkcs.RSAPublicKey.getInstance(seq);
+                RSAPublicKeySpec pubSpec = new RSAPublicKeySpec(key.getModulus(), key.getPublicExponent());
+                publicKey = fact.generatePublic(pubSpec);
+            } else {
+                throw new IllegalArgumentException(type + " is not a supported format");
+            }
+
+            return new KeyPair(publicKey, privateKey);
+        } catch (InvalidKeySpecException e) {
+            throw new RuntimeException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
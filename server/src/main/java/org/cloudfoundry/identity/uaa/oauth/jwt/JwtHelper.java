@@ -56,11 +56,21 @@ public class JwtHelper {
     }
 
     public static Jwt encode(CharSequence content, KeyInfo keyInfo) {
+        return encode(utf8Encode(content), keyInfo);
+    }
+
+    /**
+     * Creates a signed token from already UTF-8 encoded claims, e.g. as produced by
+     * {@link JsonUtils#writeValueAsBytes(Object)}, without an intermediate String.
+     *
+     * @param claims  the UTF-8 encoded JSON claims
+     * @param keyInfo the key used to sign the token
+     */
+    public static Jwt encode(byte[] claims, KeyInfo keyInfo) {
         JwtHeader header = JwtHeaderHelper.create(keyInfo.algorithm(), keyInfo.keyId(), keyInfo.keyURL());
-        byte[] claims = utf8Encode(content);
-        byte[] crypto = keyInfo.getSigner()
-          .sign(concat(b64UrlEncode(header.bytes()), PERIOD, b64UrlEncode(claims)));
-        return new JwtImpl(header, claims, crypto);
+        byte[] signingInput = concat(b64UrlEncode(header.bytes()), PERIOD, b64UrlEncode(claims));
+        byte[] crypto = keyInfo.getSigner().sign(signingInput);
+        return new JwtImpl(header, claims, crypto, signingInput);
     }
 }
 
@@ -118,7 +128,7 @@ class JwtImpl implements Jwt {
 
     private final byte[] crypto;
 
-    private String claims;
+    private byte[] signingInput;
 
     /**
      * @param header  the header, containing the JWS/JWE algorithm information.
@@ -127,10 +137,18 @@ class JwtImpl implements Jwt {
      * @param crypto  the base64-decoded "crypto" segment.
      */
     JwtImpl(JwtHeader header, byte[] content, byte[] crypto) {
+        this(header, content, crypto, null);
+    }
+
+    /**
+     * @param signingInput the already encoded header and claims segments, reused when
+     *                     the token is serialized so they are not base64 encoded twice.
+     */
+    JwtImpl(JwtHeader header, byte[] content, byte[] crypto, byte[] signingInput) {
         this.header = header;
         this.content = content;
         this.crypto = crypto;
-        claims = utf8Decode(content);
+        this.signingInput = signingInput;
     }
 
     /**
@@ -144,8 +162,11 @@ class JwtImpl implements Jwt {
     }
 
     private byte[] signingInput() {
-        return concat(safeB64UrlEncode(header.bytes()), JwtHelper.PERIOD,
-          safeB64UrlEncode(content));
+        if (signingInput == null) {
+            signingInput = concat(safeB64UrlEncode(header.bytes()), JwtHelper.PERIOD,
+              safeB64UrlEncode(content));
+        }
+        return signingInput;
     }
 
     private byte[] safeB64UrlEncode(byte[] bytes) {
@@ -164,8 +185,7 @@ class JwtImpl implements Jwt {
      */
     @Override
     public byte[] bytes() {
-        return concat(b64UrlEncode(header.bytes()), JwtHelper.PERIOD,
-          b64UrlEncode(content), JwtHelper.PERIOD, b64UrlEncode(crypto));
+        return concat(signingInput(), JwtHelper.PERIOD, b64UrlEncode(crypto));
     }
 
     @Override
@@ -180,7 +200,7 @@ class JwtImpl implements Jwt {
 
     @Override
     public String toString() {
-        return header + " " + claims + " [" + crypto.length + " crypto bytes]";
+        return header + " " + getClaims() + " [" + crypto.length + " crypto bytes]";
     }
 
     @Override
@@ -73,7 +73,7 @@ public class RefreshTokenCreator {
                                  Map<String, String> additionalAuthorizationAttributes,
                                  Date expirationDate,
                                  String tokenId) {
-        String content;
+        byte[] content;
         try {
             Map<String, Object> claims = new LinkedHashMap<>();
 
@@ -122,7 +122,7 @@ public class RefreshTokenCreator {
                 claims.put(REVOCATION_SIGNATURE, revocableHashSignature);
             }
 
-            content = JsonUtils.writeValueAsString(claims);
+            content = JsonUtils.writeValueAsBytes(claims);
         } catch (JsonUtils.JsonUtilException e) {
             throw new IllegalStateException("Cannot convert access token to JSON", e);
         }
@@ -12,11 +12,14 @@
  *******************************************************************************/
 package org.cloudfoundry.identity.uaa.oauth.token;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.cloudfoundry.identity.uaa.audit.event.SystemDeletable;
 import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
 import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
@@ -24,7 +27,12 @@ import org.springframework.util.StringUtils;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
@@ -47,7 +55,13 @@ public class JdbcRevocableTokenProvisioning implements RevocableTokenProvisionin
     protected final static String DELETE_REFRESH_TOKEN_QUERY = "DELETE FROM " + TABLE + " WHERE user_id=? AND client_id=? AND response_type='" +REFRESH_TOKEN_RESPONSE_TYPE+ "' AND identity_zone_id=?";
     protected final static String DELETE_BY_CLIENT_QUERY = "DELETE FROM " + TABLE + " WHERE client_id = ? AND identity_zone_id=?";
     protected final static String DELETE_BY_USER_QUERY = "DELETE FROM " + TABLE + " WHERE user_id = ? AND identity_zone_id=?";
+    protected final static String DELETE_BY_USER_AND_CLIENT_QUERY = "DELETE FROM " + TABLE + " WHERE user_id = ? AND client_id = ? AND identity_zone_id=?";
     protected final static String DELETE_BY_ZONE_QUERY = "DELETE FROM " + TABLE + " WHERE identity_zone_id=?";
+    protected final static String EPOCH_TABLE = "revocable_token_epoch";
+    protected final static String GET_EPOCH_QUERY = "SELECT epoch FROM " + EPOCH_TABLE + " WHERE identity_zone_id=?";
+    protected final static String INCREMENT_EPOCH_QUERY = "UPDATE " + EPOCH_TABLE + " SET epoch = epoch + 1 WHERE identity_zone_id=?";
+    protected final static String INSERT_EPOCH_QUERY = "INSERT INTO " + EPOCH_TABLE + " (identity_zone_id, epoch) VALUES (?,1)";
+    protected final static String DELETE_EPOCH_QUERY = "DELETE FROM " + EPOCH_TABLE + " WHERE identity_zone_id=?";
 
 
     protected static final Log logger = LogFactory.getLog(JdbcRevocableTokenProvisioning.class);
@@ -60,6 +74,14 @@ public class JdbcRevocableTokenProvisioning implements RevocableTokenProvisionin
     protected long expirationCheckInterval = 30000; //30 seconds
     private long maxExpirationRuntime = 2500l;
 
+    private long cacheExpirationTime = 0;
+    private int cacheSize = 10000;
+    //token id and zone id to the token, or to empty once a lookup found no token
+    private Cache<List<String>, Optional<RevocableToken>> cache;
+    private long epochCheckInterval = 1000;
+    //zone id to the revocation epoch of the zone that the cached tokens belong to
+    private final ConcurrentMap<String, ZoneEpoch> epochs = new ConcurrentHashMap<>();
+
     public JdbcRevocableTokenProvisioning(JdbcTemplate jdbcTemplate,
                                           LimitSqlAdapter limitSqlAdapter,
                                           TimeService timeService) {
@@ -79,7 +101,7 @@ public class JdbcRevocableTokenProvisioning implements RevocableTokenProvisionin
         if (checkExpired) {
             checkExpired();
         }
-        RevocableToken result = template.queryForObject(GET_QUERY, rowMapper, id, zoneId);
+        RevocableToken result = cache == null ? template.queryForObject(GET_QUERY, rowMapper, id, zoneId) : retrieveCached(id, zoneId);
         if (checkExpired && result.getExpiresAt() < timeService.getCurrentTimeMillis()) {
             delete(id, 0, zoneId);
             throw new EmptyResultDataAccessException("Token expired.", 1);
@@ -92,10 +114,109 @@ public class JdbcRevocableTokenProvisioning implements RevocableTokenProvisionin
         return retrieve(id, true, zoneId);
     }
 
+    private RevocableToken retrieveCached(String id, String zoneId) {
+        checkEpoch(zoneId);
+        List<String> key = Arrays.asList(id, zoneId);
+        Optional<RevocableToken> cached = cache.getIfPresent(key);
+        if (cached == null) {
+            try {
+                cached = Optional.of(template.queryForObject(GET_QUERY, rowMapper, id, zoneId));
+            } catch (EmptyResultDataAccessException e) {
+                cached = Optional.empty();
+            }
+            cache.put(key, cached);
+        }
+        if (!cached.isPresent()) {
+            throw new EmptyResultDataAccessException("Token not found.", 1);
+        }
+        return cached.get();
+    }
+
+    /**
+     * Tokens read by id are kept in memory, and ids found missing are remembered as
+     * such, for the given time. Changes made through this instance are seen right away.
+     * Changes made through other instances bump the revocation epoch of the zone in
+     * the database, which empties the cache of the zone once this instance next checks
+     * the epoch, see {@link #setEpochCheckInterval(long)}. The cache has to be enabled
+     * on all instances for them to bump the epoch. Zero, the default, reads every
+     * token from the database.
+     *
+     * @param cacheExpirationTime how long, in milliseconds, a token read is cached
+     */
+    public void setCacheExpirationTime(long cacheExpirationTime) {
+        this.cacheExpirationTime = cacheExpirationTime;
+        this.cache = buildCache();
+    }
+
+    /**
+     * @param epochCheckInterval how long, in milliseconds, this instance may go without
+     *                           reading the revocation epoch of a zone. It bounds how long
+     *                           a token revoked through another instance is still accepted here.
+     */
+    public void setEpochCheckInterval(long epochCheckInterval) {
+        this.epochCheckInterval = epochCheckInterval;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+        this.cache = buildCache();
+    }
+
+    private Cache<List<String>, Optional<RevocableToken>> buildCache() {
+        if (cacheExpirationTime <= 0) {
+            return null;
+        }
+        return CacheBuilder.newBuilder()
+            .maximumSize(cacheSize)
+            .expireAfterWrite(cacheExpirationTime, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    private void evict(String id, String zoneId) {
+        if (cache != null) {
+            cache.invalidate(Arrays.asList(id, zoneId));
+        }
+    }
+
+    private void evictAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    private void checkEpoch(String zoneId) {
+        long now = timeService.getCurrentTimeMillis();
+        ZoneEpoch known = epochs.get(zoneId);
+        if (known != null && now - known.checkedAt < epochCheckInterval) {
+            return;
+        }
+        List<Long> epoch = template.queryForList(GET_EPOCH_QUERY, Long.class, zoneId);
+        ZoneEpoch current = new ZoneEpoch(epoch.isEmpty() ? 0 : epoch.get(0), now);
+        if (known != null && known.epoch != current.epoch) {
+            cache.asMap().keySet().removeIf(key -> zoneId.equals(key.get(1)));
+        }
+        epochs.put(zoneId, current);
+    }
+
+    private void bumpEpoch(String zoneId) {
+        if (cache == null) {
+            return;
+        }
+        if (template.update(INCREMENT_EPOCH_QUERY, zoneId) == 0) {
+            try {
+                template.update(INSERT_EPOCH_QUERY, zoneId);
+            } catch (DuplicateKeyException e) {
+                template.update(INCREMENT_EPOCH_QUERY, zoneId);
+            }
+        }
+    }
+
 
     @Override
     public int deleteRefreshTokensForClientAndUserId(String clientId, String userId, String zoneId) {
         int deleted_rows = template.update(DELETE_REFRESH_TOKEN_QUERY, userId, clientId, zoneId);
+        bumpEpoch(zoneId);
+        evictAll();
         return deleted_rows;
     }
 
@@ -104,6 +225,7 @@ public class JdbcRevocableTokenProvisioning implements RevocableTokenProvisionin
     @Override
     public RevocableToken create(RevocableToken t, String zoneId) {
         checkExpired();
+        evict(t.getTokenId(), zoneId);
         template.update(INSERT_QUERY,
                         t.getTokenId(),
                         t.getClientId(),
@@ -131,29 +253,53 @@ public class JdbcRevocableTokenProvisioning implements RevocableTokenProvisionin
                         t.getValue(),
                         id,
                         zoneId);
+        bumpEpoch(zoneId);
+        evict(id, zoneId);
         return retrieve(id, false, zoneId);
     }
 
     @Override
     public RevocableToken delete(String id, int version, String zoneId) {
-        RevocableToken previous = retrieve(id, false, zoneId);
+        //read from the database, the token may have been deleted through another instance
+        RevocableToken previous = template.queryForObject(GET_QUERY, rowMapper, id, zoneId);
         template.update(DELETE_QUERY, id, zoneId);
+        bumpEpoch(zoneId);
+        evict(id, zoneId);
         return previous;
     }
 
     @Override
     public int deleteByIdentityZone(String zoneId) {
-        return template.update(DELETE_BY_ZONE_QUERY, zoneId);
+        int deleted = template.update(DELETE_BY_ZONE_QUERY, zoneId);
+        if (cache != null) {
+            template.update(DELETE_EPOCH_QUERY, zoneId);
+        }
+        evictAll();
+        return deleted;
     }
 
     @Override
     public int deleteByClient(String clientId, String zoneId) {
-        return template.update(DELETE_BY_CLIENT_QUERY, clientId, zoneId);
+        int deleted = template.update(DELETE_BY_CLIENT_QUERY, clientId, zoneId);
+        bumpEpoch(zoneId);
+        evictAll();
+        return deleted;
     }
 
     @Override
     public int deleteByUser(String userId, String zoneId) {
-        return template.update(DELETE_BY_USER_QUERY, userId, zoneId);
+        int deleted = template.update(DELETE_BY_USER_QUERY, userId, zoneId);
+        bumpEpoch(zoneId);
+        evictAll();
+        return deleted;
+    }
+
+    @Override
+    public int deleteByUserAndClient(String userId, String clientId, String zoneId) {
+        int deleted = template.update(DELETE_BY_USER_AND_CLIENT_QUERY, userId, clientId, zoneId);
+        bumpEpoch(zoneId);
+        evictAll();
+        return deleted;
     }
 
     @Override
@@ -227,6 +373,16 @@ public class JdbcRevocableTokenProvisioning implements RevocableTokenProvisionin
         this.maxExpirationRuntime = maxExpirationRuntime;
     }
 
+    private static final class ZoneEpoch {
+        private final long epoch;
+        private final long checkedAt;
+
+        private ZoneEpoch(long epoch, long checkedAt) {
+            this.epoch = epoch;
+            this.checkedAt = checkedAt;
+        }
+    }
+
     protected static final class RevocableTokenRowMapper implements RowMapper<RevocableToken> {
 
         @Override
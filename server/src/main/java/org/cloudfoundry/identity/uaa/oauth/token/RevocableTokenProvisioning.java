@@ -20,6 +20,8 @@ public interface RevocableTokenProvisioning extends ResourceManager<RevocableTok
 
     int deleteRefreshTokensForClientAndUserId(String clientId, String userId, String zoneId);
 
+    int deleteByUserAndClient(String userId, String clientId, String zoneId);
+
     List<RevocableToken> getUserTokens(String userId, String zoneId);
 
     List<RevocableToken> getUserTokens(String userId, String clientId, String zoneId);
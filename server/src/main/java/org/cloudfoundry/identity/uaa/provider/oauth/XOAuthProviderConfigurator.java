@@ -16,6 +16,8 @@
 package org.cloudfoundry.identity.uaa.provider.oauth;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.cloudfoundry.identity.uaa.cache.UrlContentCache;
@@ -51,6 +53,7 @@ public class XOAuthProviderConfigurator implements IdentityProviderProvisioning
     private final UrlContentCache contentCache;
     private final RestTemplate trustingRestTemplate;
     private final RestTemplate nonTrustingRestTemplate;
+    private final Cache<String, DiscoveryDocument> discoveryDocuments = CacheBuilder.newBuilder().maximumSize(1000).build();
 
     public XOAuthProviderConfigurator(IdentityProviderProvisioning providerProvisioning,
                                       UrlContentCache contentCache,
@@ -75,22 +78,15 @@ public class XOAuthProviderConfigurator implements IdentityProviderProvisioning
             oidcJson = contentCache.getUrlContent(definition.getDiscoveryUrl().toString(), nonTrustingRestTemplate);
         }
 
-        Map<String, Object> oidcConfig = JsonUtils.readValue(oidcJson, new TypeReference<Map<String, Object>>() {
-        });
-
         OIDCIdentityProviderDefinition overlayedDefinition = null;
         try {
+            DiscoveryDocument discovery = getDiscoveryDocument(definition.getDiscoveryUrl().toString(), oidcJson);
             overlayedDefinition = (OIDCIdentityProviderDefinition) definition.clone();
-            URL authorizationEndpoint = new URL((String) oidcConfig.get("authorization_endpoint"));
-            URL userinfoEndpoint = new URL((String) oidcConfig.get("userinfo_endpoint"));
-            URL tokenEndpoint = new URL((String) oidcConfig.get("token_endpoint"));
-            URL tokenKeyUrl = new URL((String) oidcConfig.get("jwks_uri"));
-            String issuer = (String) oidcConfig.get("issuer");
-            overlayedDefinition.setAuthUrl(ofNullable(overlayedDefinition.getAuthUrl()).orElse(authorizationEndpoint));
-            overlayedDefinition.setUserInfoUrl(ofNullable(overlayedDefinition.getUserInfoUrl()).orElse(userinfoEndpoint));
-            overlayedDefinition.setTokenUrl(ofNullable(overlayedDefinition.getTokenUrl()).orElse(tokenEndpoint));
-            overlayedDefinition.setIssuer(ofNullable(overlayedDefinition.getIssuer()).orElse(issuer));
-            overlayedDefinition.setTokenKeyUrl(ofNullable(overlayedDefinition.getTokenKeyUrl()).orElse(tokenKeyUrl));
+            overlayedDefinition.setAuthUrl(ofNullable(overlayedDefinition.getAuthUrl()).orElse(discovery.authorizationEndpoint));
+            overlayedDefinition.setUserInfoUrl(ofNullable(overlayedDefinition.getUserInfoUrl()).orElse(discovery.userinfoEndpoint));
+            overlayedDefinition.setTokenUrl(ofNullable(overlayedDefinition.getTokenUrl()).orElse(discovery.tokenEndpoint));
+            overlayedDefinition.setIssuer(ofNullable(overlayedDefinition.getIssuer()).orElse(discovery.issuer));
+            overlayedDefinition.setTokenKeyUrl(ofNullable(overlayedDefinition.getTokenKeyUrl()).orElse(discovery.tokenKeyUrl));
         } catch (MalformedURLException | CloneNotSupportedException e) {
             throw new IllegalStateException(e);
         }
@@ -98,6 +94,40 @@ public class XOAuthProviderConfigurator implements IdentityProviderProvisioning
         return overlayedDefinition;
     }
 
+    /**
+     * The discovery document content is cached by the {@link UrlContentCache}, which hands out
+     * the same array until the entry expires. The parsed document is reused for as long as that
+     * array is, so rendering the login page does not re-parse the document of every provider.
+     */
+    private DiscoveryDocument getDiscoveryDocument(String discoveryUrl, byte[] oidcJson) throws MalformedURLException {
+        DiscoveryDocument discovery = discoveryDocuments.getIfPresent(discoveryUrl);
+        if (discovery == null || oidcJson == null || discovery.content != oidcJson) {
+            discovery = new DiscoveryDocument(oidcJson);
+            discoveryDocuments.put(discoveryUrl, discovery);
+        }
+        return discovery;
+    }
+
+    private static class DiscoveryDocument {
+        private final byte[] content;
+        private final URL authorizationEndpoint;
+        private final URL userinfoEndpoint;
+        private final URL tokenEndpoint;
+        private final URL tokenKeyUrl;
+        private final String issuer;
+
+        private DiscoveryDocument(byte[] content) throws MalformedURLException {
+            Map<String, Object> oidcConfig = JsonUtils.readValue(content, new TypeReference<Map<String, Object>>() {
+            });
+            this.content = content;
+            this.authorizationEndpoint = new URL((String) oidcConfig.get("authorization_endpoint"));
+            this.userinfoEndpoint = new URL((String) oidcConfig.get("userinfo_endpoint"));
+            this.tokenEndpoint = new URL((String) oidcConfig.get("token_endpoint"));
+            this.tokenKeyUrl = new URL((String) oidcConfig.get("jwks_uri"));
+            this.issuer = (String) oidcConfig.get("issuer");
+        }
+    }
+
     public String getCompleteAuthorizationURI(String alias, String baseURL, AbstractXOAuthIdentityProviderDefinition definition) {
         try {
             String authUrlBase;
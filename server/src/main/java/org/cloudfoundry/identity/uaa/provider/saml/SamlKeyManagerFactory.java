@@ -12,6 +12,9 @@
  *******************************************************************************/
 package org.cloudfoundry.identity.uaa.provider.saml;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.cloudfoundry.identity.uaa.saml.SamlKey;
 import org.cloudfoundry.identity.uaa.util.KeyWithCert;
 import org.cloudfoundry.identity.uaa.zone.SamlConfig;
@@ -24,8 +27,14 @@ import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Optional.ofNullable;
 
@@ -35,8 +44,41 @@ public final class SamlKeyManagerFactory {
 
     private SamlKeyManagerFactory() {}
 
+    private static final Cache<List<String>, Optional<KeyManager>> keyManagers = CacheBuilder.newBuilder()
+        .maximumSize(1000)
+        .expireAfterAccess(1, TimeUnit.HOURS)
+        .build();
+
+    /**
+     * Key managers are cached by the key material they are built from, so zones read
+     * again for every request share one key manager until their keys change.
+     */
     public static KeyManager getKeyManager(SamlConfig config) {
-        return getKeyManager(config.getKeys(), config.getActiveKeyId());
+        Map<String, SamlKey> keys = config.getKeys();
+        String activeKeyId = config.getActiveKeyId();
+        if (keys.get(activeKeyId) == null) {
+            return null;
+        }
+        try {
+            return keyManagers.get(getCacheKey(keys, activeKeyId), () -> ofNullable(getKeyManager(keys, activeKeyId))).orElse(null);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause();
+            }
+            throw new IllegalArgumentException(e.getCause());
+        }
+    }
+
+    private static List<String> getCacheKey(Map<String, SamlKey> keys, String activeKeyId) {
+        List<String> result = new ArrayList<>(1 + keys.size() * 4);
+        result.add(activeKeyId);
+        for (Map.Entry<String, SamlKey> entry : new TreeMap<>(keys).entrySet()) {
+            result.add(entry.getKey());
+            result.add(entry.getValue().getKey());
+            result.add(entry.getValue().getPassphrase());
+            result.add(entry.getValue().getCertificate());
+        }
+        return result;
     }
 
     private static KeyManager getKeyManager(Map<String, SamlKey> keys, String activeKeyId) {
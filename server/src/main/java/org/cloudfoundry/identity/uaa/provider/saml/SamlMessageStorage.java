@@ -17,30 +17,115 @@ package org.cloudfoundry.identity.uaa.provider.saml;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.opensaml.Configuration;
 import org.opensaml.xml.XMLObject;
+import org.opensaml.xml.io.Marshaller;
+import org.opensaml.xml.io.Unmarshaller;
+import org.opensaml.xml.parse.BasicParserPool;
+import org.opensaml.xml.util.XMLHelper;
 import org.springframework.security.saml.storage.SAMLMessageStorage;
+import org.w3c.dom.Element;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class SamlMessageStorage implements SAMLMessageStorage {
+/**
+ * Keeps the SAML requests sent from one HTTP session until the matching response arrives.
+ * <p>
+ * Messages are held in their marshalled XML form rather than as an object tree with
+ * its DOM, and are unmarshalled again when retrieved. Both the number of messages and
+ * the time they are kept are bounded, so abandoned login attempts do not pile up in
+ * the session. Being serializable, the storage can live in a session that is shared
+ * between instances.
+ */
+public class SamlMessageStorage implements SAMLMessageStorage, Serializable {
+
+    public static final int DEFAULT_MAX_MESSAGES = 50;
+    public static final long DEFAULT_MESSAGE_TIMEOUT = 30 * 60 * 1000;
 
+    private static final long serialVersionUID = 1L;
     private static Log logger = LogFactory.getLog(SamlMessageStorage.class);
-    private ConcurrentMap<String, XMLObject> messages = new ConcurrentHashMap<>();
+    private static final BasicParserPool parserPool = new BasicParserPool();
+    private static final AtomicLong evictedMessages = new AtomicLong();
+    private static final AtomicLong expiredMessages = new AtomicLong();
+
+    private final int maxMessages;
+    private final long messageTimeout;
+    private transient TimeService timeService = new TimeServiceImpl();
+    private final Map<String, StoredMessage> messages;
+
+    public SamlMessageStorage() {
+        this(DEFAULT_MAX_MESSAGES, DEFAULT_MESSAGE_TIMEOUT);
+    }
+
+    /**
+     * @param maxMessages    the number of messages kept, the oldest message is dropped beyond that
+     * @param messageTimeout how long, in milliseconds, a message is kept waiting for its response
+     */
+    public SamlMessageStorage(int maxMessages, long messageTimeout) {
+        this.maxMessages = maxMessages;
+        this.messageTimeout = messageTimeout;
+        this.messages = new LinkedHashMap<>();
+    }
+
+    public void setTimeService(TimeService timeService) {
+        this.timeService = timeService;
+    }
+
+    /**
+     * @return the number of messages dropped, by all storages, because a storage was full
+     */
+    public static long getEvictedMessages() {
+        return evictedMessages.get();
+    }
+
+    /**
+     * @return the number of messages dropped, by all storages, because no response arrived in time
+     */
+    public static long getExpiredMessages() {
+        return expiredMessages.get();
+    }
 
     @Override
-    public void storeMessage(String messageId, XMLObject message) {
+    public synchronized void storeMessage(String messageId, XMLObject message) {
         logger.debug(String.format("Storing SAML message with ID:%s for subdomain:%s", messageId, IdentityZoneHolder.get().getSubdomain()));
-        XMLObject previous = messages.put(messageId, message);
+        long now = timeService.getCurrentTimeMillis();
+        removeExpired(now);
+        StoredMessage previous = messages.remove(messageId);
         if (previous!=null) {
             logger.warn(String.format("SAML message replaced, it already exists with ID:%s for subdomain:%s.", messageId, IdentityZoneHolder.get().getSubdomain()));
         }
+        messages.put(messageId, new StoredMessage(message, now + messageTimeout));
+        Iterator<StoredMessage> oldest = messages.values().iterator();
+        while (messages.size() > maxMessages) {
+            oldest.next();
+            oldest.remove();
+            evictedMessages.incrementAndGet();
+            logger.warn(String.format("SAML message storage full, dropped the oldest message for subdomain:%s", IdentityZoneHolder.get().getSubdomain()));
+        }
     }
 
     @Override
-    public XMLObject retrieveMessage(String messageId) {
-        XMLObject result = messages.remove(messageId);
+    public synchronized XMLObject retrieveMessage(String messageId) {
+        StoredMessage stored = messages.remove(messageId);
+        XMLObject result = null;
+        if (stored != null) {
+            if (stored.expiresAt <= timeService.getCurrentTimeMillis()) {
+                expiredMessages.incrementAndGet();
+                logger.debug(String.format("SAML message with ID:%s has expired", messageId));
+            } else {
+                result = stored.getMessage();
+            }
+        }
         logger.debug(String.format("%s - Retrieving SAML message with ID:%s for subdomain:%s",
                                    result==null ? "Failure" : "Success",
                                    messageId,
@@ -48,4 +133,64 @@ public class SamlMessageStorage implements SAMLMessageStorage {
         );
         return result;
     }
+
+    protected void removeExpired(long now) {
+        for (Iterator<StoredMessage> it = messages.values().iterator(); it.hasNext(); ) {
+            if (it.next().expiresAt <= now) {
+                it.remove();
+                expiredMessages.incrementAndGet();
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        timeService = new TimeServiceImpl();
+    }
+
+    private static class StoredMessage implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String xml;
+        private final transient XMLObject message;
+        private final long expiresAt;
+
+        private StoredMessage(XMLObject message, long expiresAt) {
+            this.xml = marshall(message);
+            //objects without a registered marshaller are kept as they are
+            this.message = xml == null ? message : null;
+            this.expiresAt = expiresAt;
+        }
+
+        private XMLObject getMessage() {
+            if (xml == null) {
+                return message;
+            }
+            try {
+                Element element = parserPool.parse(new StringReader(xml)).getDocumentElement();
+                Unmarshaller unmarshaller = Configuration.getUnmarshallerFactory().getUnmarshaller(element);
+                return unmarshaller.unmarshall(element);
+            } catch (Exception e) {
+                logger.warn("Unable to unmarshall stored SAML message.", e);
+                return null;
+            }
+        }
+
+        private static String marshall(XMLObject message) {
+            try {
+                Element dom = message.getDOM();
+                if (dom == null) {
+                    Marshaller marshaller = Configuration.getMarshallerFactory().getMarshaller(message);
+                    if (marshaller == null) {
+                        return null;
+                    }
+                    dom = marshaller.marshall(message);
+                }
+                return XMLHelper.nodeToString(dom);
+            } catch (Exception e) {
+                logger.debug("Unable to marshall SAML message, keeping it as is.", e);
+                return null;
+            }
+        }
+    }
 }
@@ -18,18 +18,48 @@ package org.cloudfoundry.identity.uaa.provider.saml;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.security.saml.storage.SAMLMessageStorage;
 import org.springframework.security.saml.storage.SAMLMessageStorageFactory;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
+@ManagedResource(
+    objectName="cloudfoundry.identity:name=SamlMessageStorage",
+    description = "UAA SAML Message Storage"
+)
 public class SamlSessionStorageFactory implements SAMLMessageStorageFactory {
 
     private static Log logger = LogFactory.getLog(SamlSessionStorageFactory.class);
 
     public static final String SAML_REQUEST_DATA = SamlMessageStorage.class.getName() + ".saml.requests";
 
+    private int maxMessages = SamlMessageStorage.DEFAULT_MAX_MESSAGES;
+    private long messageTimeout = SamlMessageStorage.DEFAULT_MESSAGE_TIMEOUT;
+
+    public void setMaxMessages(int maxMessages) {
+        this.maxMessages = maxMessages;
+    }
+
+    /**
+     * @param messageTimeout how long, in milliseconds, a request is kept waiting for its response
+     */
+    public void setMessageTimeout(long messageTimeout) {
+        this.messageTimeout = messageTimeout;
+    }
+
+    @ManagedMetric(category = "performance", displayName = "SAML messages dropped because the storage was full")
+    public long getEvictedMessages() {
+        return SamlMessageStorage.getEvictedMessages();
+    }
+
+    @ManagedMetric(category = "performance", displayName = "SAML messages dropped because no response arrived in time")
+    public long getExpiredMessages() {
+        return SamlMessageStorage.getExpiredMessages();
+    }
+
     @Override
     public synchronized SAMLMessageStorage getMessageStorage(HttpServletRequest request) {
         if (IdentityZoneHolder.get().getConfig().getSamlConfig().isDisableInResponseToCheck()) {
@@ -38,10 +68,13 @@ public class SamlSessionStorageFactory implements SAMLMessageStorageFactory {
             return null;
         }
         HttpSession session = request.getSession(true);
-        if (session.getAttribute(SAML_REQUEST_DATA) == null) {
-            session.setAttribute(SAML_REQUEST_DATA, new SamlMessageStorage());
+        SAMLMessageStorage storage = (SAMLMessageStorage) session.getAttribute(SAML_REQUEST_DATA);
+        if (storage == null) {
+            storage = new SamlMessageStorage(maxMessages, messageTimeout);
         }
+        //set on every call, so session stores that only write changed attributes pick up the stored messages
+        session.setAttribute(SAML_REQUEST_DATA, storage);
         logger.debug("Returning SAML message factory for session ID:"+session.getId());
-        return (SAMLMessageStorage) session.getAttribute(SAML_REQUEST_DATA);
+        return storage;
     }
 }
@@ -20,4 +20,13 @@ public interface Queryable<T> {
 
     List<T> query(String filter, String sortBy, boolean ascending, String zoneId);
 
+    /**
+     * Same as {@link #query(String, String, boolean, String)}, but an implementation
+     * backed by a database reads the results {@code pageSize} rows at a time, so a
+     * sub list of that size is read with a single query.
+     */
+    default List<T> query(String filter, String sortBy, boolean ascending, String zoneId, int pageSize) {
+        return query(filter, sortBy, ascending, zoneId);
+    }
+
 }
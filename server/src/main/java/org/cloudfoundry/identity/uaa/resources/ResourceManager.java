@@ -12,6 +12,8 @@
  *******************************************************************************/
 package org.cloudfoundry.identity.uaa.resources;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public interface ResourceManager<T> {
@@ -20,6 +22,20 @@ public interface ResourceManager<T> {
 
     T retrieve(String id, String zoneId);
 
+    /**
+     * Retrieves several resources at once. Implementations backed by a database should
+     * override this to use a few queries; this default retrieves them one by one.
+     *
+     * @return the resources found, in no particular order
+     */
+    default List<T> retrieveByIds(Collection<String> ids, String zoneId) {
+        List<T> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            result.add(retrieve(id, zoneId));
+        }
+        return result;
+    }
+
     T create(T resource, String zoneId);
 
     T update(String id, T resource, String zoneId);
@@ -18,15 +18,20 @@ import org.cloudfoundry.identity.uaa.resources.Queryable;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 public abstract class AbstractQueryable<T> implements Queryable<T> {
 
+    public static final int MAX_IN_CLAUSE_SIZE = 500;
+
     private NamedParameterJdbcTemplate jdbcTemplate;
 
     private JdbcPagingListFactory pagingListFactory;
@@ -73,6 +78,11 @@ public abstract class AbstractQueryable<T> implements Queryable<T> {
 
     @Override
     public List<T> query(String filter, String sortBy, boolean ascending, String zoneId) {
+        return query(filter, sortBy, ascending, zoneId, this.pageSize);
+    }
+
+    @Override
+    public List<T> query(String filter, String sortBy, boolean ascending, String zoneId, int pageSize) {
         validateOrderBy(queryConverter.map(sortBy));
         if (StringUtils.hasText(filter)) {
             filter = "("+ filter+ ") and";
@@ -98,6 +108,23 @@ public abstract class AbstractQueryable<T> implements Queryable<T> {
         }
     }
 
+    /**
+     * Reads the rows with the given ids with one query per {@link #MAX_IN_CLAUSE_SIZE} ids.
+     * Ids that do not exist are skipped.
+     */
+    protected List<T> queryByIds(String idColumn, Collection<String> ids, String zoneId) {
+        List<String> distinctIds = new ArrayList<>(new HashSet<>(ids));
+        List<T> result = new ArrayList<>(distinctIds.size());
+        String sql = getBaseSqlQuery() + " where identity_zone_id = :zoneId and " + idColumn + " in (:ids)";
+        for (int i = 0; i < distinctIds.size(); i += MAX_IN_CLAUSE_SIZE) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("zoneId", zoneId)
+                .addValue("ids", distinctIds.subList(i, Math.min(i + MAX_IN_CLAUSE_SIZE, distinctIds.size())));
+            result.addAll(jdbcTemplate.query(sql, params, rowMapper));
+        }
+        return result;
+    }
+
     protected String getQuerySQL(String filter, SearchQueryConverter.ProcessedFilter where) {
         if (filter == null || filter.trim().length()==0) {
             return getBaseSqlQuery();
@@ -19,4 +19,12 @@ public interface LimitSqlAdapter {
     }
 
     String getDeleteExpiredQuery(String tablename, String primaryKeyColumn, String expiresColumn, int maxRows);
+
+    /**
+     * @return a statement that deletes the matching rows and returns the given columns
+     * of the deleted rows, or null when the database has no single statement for that
+     */
+    default String getDeleteReturningQuery(String tablename, String[] columns, String whereClause) {
+        return null;
+    }
 }
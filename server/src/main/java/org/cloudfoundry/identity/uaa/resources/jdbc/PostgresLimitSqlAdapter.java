@@ -33,4 +33,9 @@ public class PostgresLimitSqlAdapter implements LimitSqlAdapter {
             expiresColumn +
             " LIMIT "+maxRows+"))";
     }
+
+    @Override
+    public String getDeleteReturningQuery(String tablename, String[] columns, String whereClause) {
+        return "DELETE FROM " + tablename + " WHERE " + whereClause + " RETURNING " + String.join(", ", columns);
+    }
 }
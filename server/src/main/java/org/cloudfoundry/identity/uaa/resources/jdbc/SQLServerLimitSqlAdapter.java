@@ -41,4 +41,13 @@ public class SQLServerLimitSqlAdapter implements LimitSqlAdapter {
             " ORDER BY "+ expiresColumn + ")";
     }
 
+    @Override
+    public String getDeleteReturningQuery(String tablename, String[] columns, String whereClause) {
+        StringBuilder output = new StringBuilder();
+        for (String column : columns) {
+            output.append(output.length() == 0 ? "" : ", ").append("DELETED.").append(column);
+        }
+        return "DELETE FROM " + tablename + " OUTPUT " + output + " WHERE " + whereClause;
+    }
+
 }
@@ -13,6 +13,8 @@
 
 package org.cloudfoundry.identity.uaa.resources.jdbc;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.unboundid.scim.sdk.InvalidResourceException;
 import com.unboundid.scim.sdk.SCIMException;
 import com.unboundid.scim.sdk.SCIMFilter;
@@ -34,6 +36,8 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static com.unboundid.scim.sdk.SCIMException.createException;
 import static java.util.Collections.emptyList;
@@ -97,6 +101,29 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
         )
     );
 
+    /**
+     * Attributes for which a single {@code attr eq "value"} filter is converted without
+     * going through the SCIM filter parser.
+     */
+    public static final List<String> FAST_PATH_ATTRIBUTE_NAMES = Collections.unmodifiableList(
+        Arrays.asList(
+            "id",
+            "username",
+            "displayname",
+            "client_id"
+        )
+    );
+
+    private static final Pattern SIMPLE_EQUALITY_FILTER = Pattern.compile("^\\s*([A-Za-z_]+)\\s+eq\\s+\"([^\"\\\\]*)\"\\s*$");
+
+    public static final int DEFAULT_FILTER_CACHE_SIZE = 1000;
+
+    //parsed and validated filters are immutable, so they can be shared by all converters
+    private static final Cache<String, SCIMFilter> parsedFilters = CacheBuilder
+        .newBuilder()
+        .maximumSize(DEFAULT_FILTER_CACHE_SIZE)
+        .build();
+
     private static Log logger = LogFactory.getLog(SimpleSearchQueryConverter.class);
     private AttributeNameMapper mapper = new SimpleAttributeNameMapper(Collections.<String, String> emptyMap());
 
@@ -144,8 +171,11 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
     private String getWhereClause(String filter, String sortBy, boolean ascending, Map<String, Object> values, AttributeNameMapper mapper, String paramPrefix) {
 
         try {
-            SCIMFilter scimFilter = scimFilter(filter);
-            String whereClause = createFilter(scimFilter, values, mapper, paramPrefix);
+            String whereClause = simpleEqualityClause(filter, values, paramPrefix);
+            if (whereClause == null) {
+                SCIMFilter scimFilter = scimFilter(filter);
+                whereClause = createFilter(scimFilter, values, mapper, paramPrefix);
+            }
             if (sortBy != null) {
                 sortBy = mapper.mapToInternal(sortBy);
                 // Need to add "asc" or "desc" explicitly to ensure that the pattern
@@ -172,7 +202,41 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
         }
     }
 
+    /**
+     * Converts filters of the form {@code attr eq "value"} on one of the
+     * {@link #FAST_PATH_ATTRIBUTE_NAMES} directly into a where clause.
+     *
+     * @return the where clause, or null if the filter has to go through the SCIM parser
+     */
+    protected String simpleEqualityClause(String filter, Map<String, Object> values, String paramPrefix) {
+        Matcher matcher = SIMPLE_EQUALITY_FILTER.matcher(filter);
+        if (!matcher.matches() || !FAST_PATH_ATTRIBUTE_NAMES.contains(matcher.group(1).toLowerCase())) {
+            return null;
+        }
+        Object value = getStringOrDate(matcher.group(2));
+        if (!(value instanceof String)) {
+            return null;
+        }
+        String pName = getParamName(values, paramPrefix);
+        String attributeName = mapper.mapToInternal(matcher.group(1)).replace("meta.", "");
+        values.put(pName, value);
+        if (isDbCaseInsensitive()) {
+            return attributeName + " = :" + pName;
+        } else {
+            return "LOWER(" + attributeName + ") = LOWER(:" + pName + ")";
+        }
+    }
+
     protected SCIMFilter scimFilter(String filter) throws SCIMException {
+        SCIMFilter scimFilter = parsedFilters.getIfPresent(filter);
+        if (scimFilter == null) {
+            scimFilter = parseScimFilter(filter);
+            parsedFilters.put(filter, scimFilter);
+        }
+        return scimFilter;
+    }
+
+    private SCIMFilter parseScimFilter(String filter) throws SCIMException {
         SCIMFilter scimFilter;
         try {
             scimFilter = SCIMFilter.parse(filter);
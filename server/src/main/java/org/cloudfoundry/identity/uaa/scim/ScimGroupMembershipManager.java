@@ -15,8 +15,14 @@ package org.cloudfoundry.identity.uaa.scim;
 import org.cloudfoundry.identity.uaa.scim.exception.MemberAlreadyExistsException;
 import org.cloudfoundry.identity.uaa.scim.exception.MemberNotFoundException;
 import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceNotFoundException;
+import org.cloudfoundry.identity.uaa.util.UaaPagingUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface ScimGroupMembershipManager  {
@@ -46,6 +52,38 @@ public interface ScimGroupMembershipManager  {
     List<ScimGroupMember> getMembers(String groupId, boolean includeEntities, String zoneId)
         throws ScimResourceNotFoundException;
 
+    /**
+     * Retrieve one page of the members of a group, ordered by member id
+     *
+     * @param groupId
+     * @param includeEntities
+     * @param zoneId
+     * @param startIndex the 1-based index of the first member
+     * @param count the maximum number of members
+     * @throws ScimResourceNotFoundException
+     */
+    default List<ScimGroupMember> getMembers(String groupId, boolean includeEntities, String zoneId, int startIndex, int count)
+        throws ScimResourceNotFoundException {
+        List<ScimGroupMember> members = new ArrayList<>(getMembers(groupId, includeEntities, zoneId));
+        members.sort(Comparator.comparing(ScimGroupMember::getMemberId));
+        return new ArrayList<>(UaaPagingUtils.subList(members, startIndex, count));
+    }
+
+    /**
+     * Retrieve the members of several groups, without their entities
+     *
+     * @param groupIds
+     * @param zoneId
+     * @return the members by group id
+     */
+    default Map<String, List<ScimGroupMember>> getMembers(Collection<String> groupIds, String zoneId) {
+        Map<String, List<ScimGroupMember>> result = new HashMap<>();
+        for (String groupId : groupIds) {
+            result.put(groupId, getMembers(groupId, false, zoneId));
+        }
+        return result;
+    }
+
     /**
      * Retrieve all groups that the given member belongs to
      *
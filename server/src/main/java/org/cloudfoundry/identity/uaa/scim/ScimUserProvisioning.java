@@ -34,5 +34,12 @@ public interface ScimUserProvisioning extends ResourceManager<ScimUser>, Queryab
     boolean checkPasswordChangeIndividuallyRequired(String id, String zoneId) throws ScimResourceNotFoundException;
 
     void updateLastLogonTime(String id, String zoneId);
+
+    /**
+     * Replaces the salt of the user, which invalidates all revocable tokens issued to the user,
+     * without rewriting the rest of the user. The version of the user is incremented, so that
+     * updates based on the user as read before the revocation fail instead of restoring the old salt.
+     */
+    void updateSalt(String id, String salt, String zoneId) throws ScimResourceNotFoundException;
 }
 
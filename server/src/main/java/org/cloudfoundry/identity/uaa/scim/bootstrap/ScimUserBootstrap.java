@@ -45,9 +45,11 @@ import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -88,6 +90,14 @@ public class ScimUserBootstrap implements
 
     private ApplicationEventPublisher publisher;
 
+    private int queryBatchSize = 50;
+
+    /**
+     * Groups looked up by display name while {@link #afterPropertiesSet()} runs,
+     * null at any other time.
+     */
+    private Map<String, ScimGroup> bootstrapGroups;
+
     /**
      * Flag to indicate that user accounts can be updated as well as created.
      *
@@ -119,15 +129,78 @@ public class ScimUserBootstrap implements
         this.usersToDelete = usersToDelete;
     }
 
+    /**
+     * @param queryBatchSize the number of users looked up with a single query
+     *                       when checking which bootstrap users already exist (default 50)
+     */
+    public void setQueryBatchSize(int queryBatchSize) {
+        this.queryBatchSize = queryBatchSize;
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception {
+        long start = System.currentTimeMillis();
         List<UaaUser> users = new LinkedList(ofNullable(this.users).orElse(emptyList()));
         List<String> deleteMe = ofNullable(usersToDelete).orElse(emptyList());
         users.removeIf(u -> deleteMe.contains(u.getUsername()));
-        for (UaaUser u : users) {
-            u.setVerified(true);
-            addUser(u);
+        bootstrapGroups = new HashMap<>();
+        try {
+            Map<String, ScimUser> existingUsers = getExistingScimUsers(users);
+            Set<String> bootstrapped = new HashSet<>();
+            for (UaaUser u : users) {
+                u.setVerified(true);
+                String key = getUserKey(u.getUsername(), u.getOrigin());
+                ScimUser existing;
+                if (bootstrapped.add(key)) {
+                    existing = existingUsers.get(key);
+                    if (existing == null && hasText(u.getId())) {
+                        existing = getScimUserById(u.getId());
+                    }
+                } else {
+                    //listed more than once, the snapshot predates the earlier entry
+                    existing = getScimUser(u);
+                }
+                addUser(u, existing);
+            }
+        } finally {
+            bootstrapGroups = null;
+        }
+        logger.info(String.format("Bootstrapped %d users in %d ms", users.size(), System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Looks up the bootstrap users that already exist with one query per origin
+     * and batch of {@link #setQueryBatchSize(int) queryBatchSize} users.
+     */
+    protected Map<String, ScimUser> getExistingScimUsers(List<UaaUser> users) {
+        Map<String, List<String>> usernamesByOrigin = new LinkedHashMap<>();
+        for (UaaUser user : users) {
+            usernamesByOrigin
+                .computeIfAbsent(getOrigin(user), k -> new ArrayList<>())
+                .add(user.getUsername());
         }
+        Map<String, ScimUser> result = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : usernamesByOrigin.entrySet()) {
+            List<String> usernames = entry.getValue();
+            for (int i = 0; i < usernames.size(); i += queryBatchSize) {
+                String filter = usernames.subList(i, Math.min(i + queryBatchSize, usernames.size()))
+                    .stream()
+                    .map(username -> "userName eq \"" + username + "\"")
+                    .collect(Collectors.joining(" or ", "origin eq \"" + entry.getKey() + "\" and (", ")"));
+                for (ScimUser user : scimUserProvisioning.query(filter, IdentityZoneHolder.get().getId())) {
+                    result.putIfAbsent(getUserKey(user.getUserName(), user.getOrigin()), user);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String getOrigin(UaaUser user) {
+        return user.getOrigin() == null ? OriginKeys.UAA : user.getOrigin();
+    }
+
+    private static String getUserKey(String username, String origin) {
+        return (origin == null ? OriginKeys.UAA : origin) + ":" + (username == null ? null : username.toLowerCase());
     }
 
     public void deleteUsers(@NotNull  List<String> deleteList) throws Exception {
@@ -155,22 +228,30 @@ public class ScimUserBootstrap implements
             (user.getOrigin() == null ? OriginKeys.UAA : user.getOrigin()) + "\"", IdentityZoneHolder.get().getId());
 
         if (users.isEmpty() && StringUtils.hasText(user.getId())) {
-            try {
-                users = Arrays.asList(scimUserProvisioning.retrieve(user.getId(), IdentityZoneHolder.get().getId()));
-            } catch (ScimResourceNotFoundException x) {
-                logger.debug("Unable to find scim user based on ID:"+user.getId());
-            }
+            return getScimUserById(user.getId());
         }
         return users.isEmpty()?null:users.get(0);
     }
 
+    private ScimUser getScimUserById(String id) {
+        try {
+            return scimUserProvisioning.retrieve(id, IdentityZoneHolder.get().getId());
+        } catch (ScimResourceNotFoundException x) {
+            logger.debug("Unable to find scim user based on ID:"+id);
+            return null;
+        }
+    }
+
     /**
      * Add a user account from the properties provided.
      *
      * @param user a UaaUser
      */
     protected void addUser(UaaUser user) {
-        ScimUser scimUser = getScimUser(user);
+        addUser(user, getScimUser(user));
+    }
+
+    private void addUser(UaaUser user, ScimUser scimUser) {
         if (scimUser==null) {
             if (isEmpty(user.getPassword()) && user.getOrigin().equals(OriginKeys.UAA)) {
                 logger.debug("User's password cannot be empty");
@@ -199,7 +280,7 @@ public class ScimUserBootstrap implements
             Set<ScimGroup> existingGroups = membershipManager.getGroupsWithMember(id, true, IdentityZoneHolder.get().getId());
 
             for (ScimGroup g : existingGroups) {
-                removeFromGroup(id, g.getDisplayName());
+                removeFromGroup(id, g);
             }
         }
 
@@ -299,16 +380,16 @@ public class ScimUserBootstrap implements
             return;
         }
         logger.debug("Adding to group: " + gName);
-        List<ScimGroup> g = scimGroupProvisioning.query(String.format("displayName eq \"%s\"", gName), IdentityZoneHolder.get().getId());
-        ScimGroup group;
-        if ((g == null || g.isEmpty()) && (!addGroup)) {
+        ScimGroup group = findGroup(gName);
+        if (group == null && (!addGroup)) {
             logger.debug("No group found with name:"+gName+". Group membership will not be added.");
             return;
-        } else if (g == null || g.isEmpty()) {
+        } else if (group == null) {
             group = new ScimGroup(null,gName,IdentityZoneHolder.get().getId());
             group = scimGroupProvisioning.create(group, IdentityZoneHolder.get().getId());
-        } else {
-            group = g.get(0);
+            if (bootstrapGroups != null) {
+                bootstrapGroups.put(gName, group);
+            }
         }
         try {
             ScimGroupMember groupMember = new ScimGroupMember(scimUserId);
@@ -319,19 +400,20 @@ public class ScimUserBootstrap implements
         }
     }
 
-    private void removeFromGroup(String scimUserId, String gName) {
-        if (!StringUtils.hasText(gName)) {
-            return;
-        }
-        logger.debug("Removing membership of group: " + gName);
-        List<ScimGroup> g = scimGroupProvisioning.query(String.format("displayName eq \"%s\"", gName), IdentityZoneHolder.get().getId());
-        ScimGroup group;
-        if (g == null || g.isEmpty()) {
-            return;
-        }
-        else {
-            group = g.get(0);
+    private ScimGroup findGroup(String gName) {
+        ScimGroup group = bootstrapGroups == null ? null : bootstrapGroups.get(gName);
+        if (group == null) {
+            List<ScimGroup> g = scimGroupProvisioning.query(String.format("displayName eq \"%s\"", gName), IdentityZoneHolder.get().getId());
+            group = (g == null || g.isEmpty()) ? null : g.get(0);
+            if (group != null && bootstrapGroups != null) {
+                bootstrapGroups.put(gName, group);
+            }
         }
+        return group;
+    }
+
+    private void removeFromGroup(String scimUserId, ScimGroup group) {
+        logger.debug("Removing membership of group: " + group.getDisplayName());
         try {
             membershipManager.removeMemberById(group.getId(), scimUserId, IdentityZoneHolder.get().getId());
         } catch (MemberNotFoundException ex) {
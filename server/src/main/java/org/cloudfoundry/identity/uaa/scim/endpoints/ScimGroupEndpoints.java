@@ -65,6 +65,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static java.util.Optional.ofNullable;
 import static org.cloudfoundry.identity.uaa.constants.OriginKeys.LDAP;
@@ -136,9 +137,6 @@ public class ScimGroupEndpoints {
         boolean needMore = response.size() < expectedResponseSize;
         while (needMore && startIndex <= input.size()) {
             for (ScimGroup group : UaaPagingUtils.subList(input, startIndex, count)) {
-                if (includeMembers) {
-                    group.setMembers(membershipManager.getMembers(group.getId(), false, IdentityZoneHolder.get().getId()));
-                }
                 response.add(group);
                 needMore = response.size() < expectedResponseSize;
                 if (!needMore) {
@@ -147,6 +145,15 @@ public class ScimGroupEndpoints {
             }
             startIndex += count;
         }
+        if (includeMembers && !response.isEmpty()) {
+            Map<String, List<ScimGroupMember>> members = membershipManager.getMembers(
+                response.stream().map(ScimGroup::getId).collect(Collectors.toList()),
+                IdentityZoneHolder.get().getId()
+            );
+            for (ScimGroup group : response) {
+                group.setMembers(members.getOrDefault(group.getId(), Collections.emptyList()));
+            }
+        }
         return response;
     }
 
@@ -531,9 +538,19 @@ public class ScimGroupEndpoints {
     @RequestMapping(value = "/Groups/{groupId}/members", method = RequestMethod.GET)
     public ResponseEntity<List<ScimGroupMember>> listGroupMemberships(@PathVariable String groupId,
                                                                       @RequestParam(required = false, defaultValue = "false") boolean returnEntities,
-                                                                      @RequestParam(required = false, defaultValue = "", name = "filter") String deprecatedFilter) {
+                                                                      @RequestParam(required = false, defaultValue = "", name = "filter") String deprecatedFilter,
+                                                                      @RequestParam(required = false, defaultValue = "1") int startIndex,
+                                                                      @RequestParam(required = false) Integer count) {
         dao.retrieve(groupId, IdentityZoneHolder.get().getId());
-        List<ScimGroupMember> members = membershipManager.getMembers(groupId, returnEntities, IdentityZoneHolder.get().getId());
+        List<ScimGroupMember> members;
+        if (count == null) {
+            members = membershipManager.getMembers(groupId, returnEntities, IdentityZoneHolder.get().getId());
+        } else {
+            if (startIndex < 1 || count < 0) {
+                throw new ScimException("Invalid paging parameters, startIndex must be at least 1 and count must not be negative.", HttpStatus.BAD_REQUEST);
+            }
+            members = membershipManager.getMembers(groupId, returnEntities, IdentityZoneHolder.get().getId(), startIndex, count);
+        }
         return new ResponseEntity<>(members, HttpStatus.OK);
     }
 
@@ -14,6 +14,10 @@ package org.cloudfoundry.identity.uaa.scim.jdbc;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.resources.jdbc.AbstractQueryable;
+import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
 import org.cloudfoundry.identity.uaa.scim.ScimGroup;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupMembershipManager;
@@ -27,18 +31,23 @@ import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceConstraintFailed
 import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceNotFoundException;
 import org.cloudfoundry.identity.uaa.util.TimeBasedExpiringValueMap;
 import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.cloudfoundry.identity.uaa.util.UaaPagingUtils;
 import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
 import org.cloudfoundry.identity.uaa.zone.IdentityZone;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneProvisioning;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.ApplicationListener;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.core.SingleColumnRowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.util.Assert;
 
 import java.sql.PreparedStatement;
@@ -47,17 +56,21 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static java.util.Collections.emptySet;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static org.springframework.util.StringUtils.hasText;
 
-public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManager, InitializingBean {
+public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManager, InitializingBean, ApplicationListener<AbstractUaaEvent> {
 
     private JdbcTemplate jdbcTemplate;
 
@@ -73,8 +86,12 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
 
     public static final String GET_GROUPS_BY_MEMBER_SQL = String.format("select distinct(group_id) from %s where member_id=? and identity_zone_id=?", MEMBERSHIP_TABLE);
 
+    public static final String GET_GROUPS_BY_MEMBERS_SQL = String.format("select distinct(group_id) from %s where member_id in (:memberIds) and identity_zone_id=:zoneId", MEMBERSHIP_TABLE);
+
     public static final String GET_MEMBERS_SQL = String.format("select %s from %s where group_id=? and identity_zone_id=?",MEMBERSHIP_FIELDS, MEMBERSHIP_TABLE);
 
+    public static final String GET_MEMBERS_OF_GROUPS_SQL = String.format("select %s from %s where group_id in (:groupIds) and identity_zone_id=:zoneId",MEMBERSHIP_FIELDS, MEMBERSHIP_TABLE);
+
     public static final String GET_MEMBER_SQL = String.format("select %s from %s where member_id=? and group_id=? and identity_zone_id=?",MEMBERSHIP_FIELDS, MEMBERSHIP_TABLE);
 
     public static final String DELETE_MEMBER_WITH_ORIGIN_SQL = String.format("delete from %s where member_id=? and origin = ? and identity_zone_id=?", MEMBERSHIP_TABLE);
@@ -103,13 +120,32 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
 
     private ScimGroupMemberRowMapper rowMapper;
 
+    private LimitSqlAdapter limitSqlAdapter;
+
     private TimeBasedExpiringValueMap<String, ScimGroup> defaultGroupCache = new TimeBasedExpiringValueMap<>(timeService);;
 
+    //zone id followed by the names of its default groups, to the resolved groups
+    private TimeBasedExpiringValueMap<List<String>, Set<ScimGroup>> defaultUserGroupsCache = new TimeBasedExpiringValueMap<>(timeService);
+
     @Override
     public void afterPropertiesSet() {
         defaultGroupCache = new TimeBasedExpiringValueMap<>(timeService);
+        defaultUserGroupsCache = new TimeBasedExpiringValueMap<>(timeService);
     }
 
+    @Override
+    public void onApplicationEvent(AbstractUaaEvent event) {
+        if (event instanceof IdentityZoneModifiedEvent ||
+            (event instanceof EntityDeletedEvent && ((EntityDeletedEvent<?>) event).getDeleted() instanceof ScimGroup)) {
+            defaultGroupCache.clear();
+            defaultUserGroupsCache.clear();
+        }
+    }
+
+    /**
+     * The resolved groups are cached per zone and list of group names, so a change of the
+     * zone's default groups is picked up on the next call.
+     */
     public Set<ScimGroup> getDefaultUserGroups(String zoneId) {
         if (!hasText(zoneId)) {
             return emptySet();
@@ -119,10 +155,22 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
         if (!zoneId.equals(currentZone.getId())) {
             zoneDefaultGroups = zoneProvisioning.retrieve(zoneId).getConfig().getUserConfig().getDefaultGroups();
         }
-        return zoneDefaultGroups
-            .stream()
-            .map(groupName -> createOrGetGroup(groupName, zoneId))
-            .collect(toSet());
+        List<String> key = new ArrayList<>();
+        key.add(zoneId);
+        if (zoneDefaultGroups != null) {
+            key.addAll(zoneDefaultGroups);
+        }
+        Set<ScimGroup> groups = defaultUserGroupsCache.get(key);
+        if (groups == null) {
+            groups = Collections.unmodifiableSet(
+                key.subList(1, key.size())
+                    .stream()
+                    .map(groupName -> createOrGetGroup(groupName, zoneId))
+                    .collect(toSet())
+            );
+            defaultUserGroupsCache.put(key, groups);
+        }
+        return groups;
     }
 
     public ScimGroup createOrGetGroup(String displayName, String zoneId) {
@@ -148,6 +196,10 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
         this.groupProvisioning = groupProvisioning;
     }
 
+    public void setLimitSqlAdapter(LimitSqlAdapter limitSqlAdapter) {
+        this.limitSqlAdapter = limitSqlAdapter;
+    }
+
     public void setTimeService(TimeService timeService) {
         this.timeService = timeService;
     }
@@ -204,20 +256,88 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
         );
 
         if (includeEntities) {
-            for (ScimGroupMember member : result) {
-                if (member.getType().equals(ScimGroupMember.Type.USER)) {
-                    ScimUser user = userProvisioning.retrieve(member.getMemberId(), IdentityZoneHolder.get().getId());
-                    member.setEntity(user);
-                } else if (member.getType().equals(ScimGroupMember.Type.GROUP)) {
-                    ScimGroup group = groupProvisioning.retrieve(member.getMemberId(), IdentityZoneHolder.get().getId());
-                    member.setEntity(group);
-                }
-            }
+            setEntities(result);
         }
 
         return new ArrayList<>(result);
     }
 
+    @Override
+    public List<ScimGroupMember> getMembers(String groupId, boolean includeEntities, String zoneId, int startIndex, int count) throws ScimResourceNotFoundException {
+        List<ScimGroupMember> result;
+        if (limitSqlAdapter != null) {
+            result = jdbcTemplate.query(
+                limitSqlAdapter.getLimitSql(GET_MEMBERS_SQL + " order by member_id", Math.max(startIndex - 1, 0), count),
+                rowMapper,
+                groupId,
+                zoneId
+            );
+        } else {
+            List<ScimGroupMember> members = jdbcTemplate.query(GET_MEMBERS_SQL + " order by member_id", rowMapper, groupId, zoneId);
+            result = UaaPagingUtils.subList(members, startIndex, count);
+        }
+
+        if (includeEntities) {
+            setEntities(result);
+        }
+
+        return new ArrayList<>(result);
+    }
+
+    @Override
+    public Map<String, List<ScimGroupMember>> getMembers(Collection<String> groupIds, String zoneId) {
+        Map<String, List<ScimGroupMember>> result = new HashMap<>();
+        List<String> distinctIds = new ArrayList<>(new HashSet<>(groupIds));
+        for (String groupId : distinctIds) {
+            result.put(groupId, new ArrayList<>());
+        }
+        NamedParameterJdbcTemplate namedTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        for (int i = 0; i < distinctIds.size(); i += AbstractQueryable.MAX_IN_CLAUSE_SIZE) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("zoneId", zoneId)
+                .addValue("groupIds", distinctIds.subList(i, Math.min(i + AbstractQueryable.MAX_IN_CLAUSE_SIZE, distinctIds.size())));
+            namedTemplate.query(GET_MEMBERS_OF_GROUPS_SQL, params, (RowCallbackHandler) rs ->
+                result.get(rs.getString(1)).add(rowMapper.mapRow(rs, 0))
+            );
+        }
+        return result;
+    }
+
+    /**
+     * Loads the users and groups of the members with one query per chunk of ids
+     * instead of one query per member.
+     */
+    private void setEntities(List<ScimGroupMember> members) {
+        String zoneId = IdentityZoneHolder.get().getId();
+        Set<String> userIds = new HashSet<>();
+        Set<String> groupIds = new HashSet<>();
+        for (ScimGroupMember member : members) {
+            if (member.getType().equals(ScimGroupMember.Type.USER)) {
+                userIds.add(member.getMemberId());
+            } else if (member.getType().equals(ScimGroupMember.Type.GROUP)) {
+                groupIds.add(member.getMemberId());
+            }
+        }
+        Map<String, ScimUser> users = new HashMap<>();
+        if (!userIds.isEmpty()) {
+            userProvisioning.retrieveByIds(userIds, zoneId).forEach(user -> users.put(user.getId(), user));
+        }
+        Map<String, ScimGroup> groups = new HashMap<>();
+        if (!groupIds.isEmpty()) {
+            groupProvisioning.retrieveByIds(groupIds, zoneId).forEach(group -> groups.put(group.getId(), group));
+        }
+        for (ScimGroupMember member : members) {
+            if (member.getType().equals(ScimGroupMember.Type.USER)) {
+                ScimUser user = users.get(member.getMemberId());
+                //a member without entity fails the same way as it did when retrieved on its own
+                member.setEntity(user != null ? user : userProvisioning.retrieve(member.getMemberId(), zoneId));
+            } else if (member.getType().equals(ScimGroupMember.Type.GROUP)) {
+                ScimGroup group = groups.get(member.getMemberId());
+                member.setEntity(group != null ? group : groupProvisioning.retrieve(member.getMemberId(), zoneId));
+            }
+        }
+    }
+
     @Override
     public Set<ScimGroup> getGroupsWithMember(final String memberId, boolean transitive, String zoneId)
                     throws ScimResourceNotFoundException {
@@ -229,40 +349,39 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
         return new HashSet<>(results);
     }
 
+    /**
+     * Walks the nesting of groups one level at a time, with one membership query and one
+     * group query per level (and per {@link AbstractQueryable#MAX_IN_CLAUSE_SIZE} ids)
+     * rather than two queries per group found.
+     */
     private void getGroupsWithMember(List<ScimGroup> results, final String memberId, boolean transitive, final String zoneId) {
         if (results == null) {
             return;
         }
-        List<String> groupIds;
-        try {
-            groupIds = jdbcTemplate.query(GET_GROUPS_BY_MEMBER_SQL, new PreparedStatementSetter() {
-                @Override
-                public void setValues(PreparedStatement ps) throws SQLException {
-                    ps.setString(1, memberId);
-                    ps.setString(2, zoneId);
-                }
-            }, new SingleColumnRowMapper<>(String.class));
-        } catch (EmptyResultDataAccessException ex) {
-            groupIds = Collections.EMPTY_LIST;
-        }
-
-        for (String groupId : groupIds) {
-            ScimGroup group;
-            try {
-                group = groupProvisioning.retrieve(groupId, IdentityZoneHolder.get().getId());
-            } catch (ScimResourceNotFoundException ex) {
-                continue;
+        NamedParameterJdbcTemplate namedTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        Set<String> visited = new HashSet<>();
+        List<String> memberIds = Collections.singletonList(memberId);
+        while (!memberIds.isEmpty()) {
+            Set<String> groupIds = new HashSet<>();
+            for (int i = 0; i < memberIds.size(); i += AbstractQueryable.MAX_IN_CLAUSE_SIZE) {
+                MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("zoneId", zoneId)
+                    .addValue("memberIds", memberIds.subList(i, Math.min(i + AbstractQueryable.MAX_IN_CLAUSE_SIZE, memberIds.size())));
+                groupIds.addAll(namedTemplate.queryForList(GET_GROUPS_BY_MEMBERS_SQL, params, String.class));
             }
-            if (!results.contains(group)) { // to ensure we don't go into
-                                            // infinite recursion caused by
-                                            // nested group cycles
-                results.add(group);
-                if (transitive) {
-                    getGroupsWithMember(results, groupId, transitive, zoneId);
-                }
+            // to ensure we don't go into infinite recursion caused by nested group cycles
+            groupIds.removeAll(visited);
+            visited.addAll(groupIds);
+            if (groupIds.isEmpty()) {
+                break;
             }
+            List<ScimGroup> groups = groupProvisioning.retrieveByIds(groupIds, zoneId);
+            results.addAll(groups);
+            if (!transitive) {
+                break;
+            }
+            memberIds = groups.stream().map(ScimGroup::getId).collect(toList());
         }
-
     }
 
     @Override
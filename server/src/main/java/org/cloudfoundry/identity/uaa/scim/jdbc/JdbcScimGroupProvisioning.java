@@ -39,6 +39,7 @@ import org.springframework.util.Assert;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
@@ -226,6 +227,11 @@ public class JdbcScimGroupProvisioning extends AbstractQueryable<ScimGroup>
         }
     }
 
+    @Override
+    public List<ScimGroup> retrieveByIds(Collection<String> ids, String zoneId) {
+        return queryByIds("id", ids, zoneId);
+    }
+
     @Override
     public ScimGroup create(final ScimGroup group, final String zoneId) throws InvalidScimResourceException {
         final String id = UUID.randomUUID().toString();
@@ -31,6 +31,7 @@ import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceConstraintFailed
 import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceNotFoundException;
 import org.cloudfoundry.identity.uaa.scim.util.ScimUtils;
 import org.cloudfoundry.identity.uaa.user.JdbcUaaUserDatabase;
+import org.cloudfoundry.identity.uaa.user.LastLogonTimeWriter;
 import org.cloudfoundry.identity.uaa.util.TimeService;
 import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
 import org.springframework.dao.DuplicateKeyException;
@@ -51,6 +52,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
@@ -93,6 +95,8 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
 
     public static final String UPDATE_PASSWORD_CHANGE_REQUIRED_SQL = "update users set passwd_change_required=? where id=? and identity_zone_id=?";
 
+    public static final String UPDATE_SALT_SQL = "update users set salt=?, version=version+1, lastModified=? where id=? and identity_zone_id=?";
+
     public static final String UPDATE_LAST_LOGON_TIME_SQL = JdbcUaaUserDatabase.DEFAULT_UPDATE_USER_LAST_LOGON;
 
     public static final String READ_PASSWORD_CHANGE_REQUIRED_SQL = "select passwd_change_required from users where id=? and identity_zone_id=?";
@@ -121,6 +125,8 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
 
     private TimeService timeService = new TimeServiceImpl();
 
+    private LastLogonTimeWriter lastLogonTimeWriter;
+
     public JdbcScimUserProvisioning(JdbcTemplate jdbcTemplate, JdbcPagingListFactory pagingListFactory) {
         super(jdbcTemplate, pagingListFactory, mapper);
         Assert.notNull(jdbcTemplate);
@@ -132,6 +138,10 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
         this.timeService = timeService;
     }
 
+    public void setLastLogonTimeWriter(LastLogonTimeWriter lastLogonTimeWriter) {
+        this.lastLogonTimeWriter = lastLogonTimeWriter;
+    }
+
     @Override
     public ScimUser retrieve(String id, String zoneId) {
         try {
@@ -142,6 +152,11 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
         }
     }
 
+    @Override
+    public List<ScimUser> retrieveByIds(Collection<String> ids, String zoneId) {
+        return queryByIds("id", ids, zoneId);
+    }
+
     @Override
     protected String getBaseSqlQuery() {
         return ALL_USERS;
@@ -339,6 +354,14 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
         }
     }
 
+    @Override
+    public void updateSalt(String id, String salt, String zoneId) throws ScimResourceNotFoundException {
+        int updated = jdbcTemplate.update(UPDATE_SALT_SQL, salt, new Timestamp(new Date().getTime()), id, zoneId);
+        if (updated == 0) {
+            throw new ScimResourceNotFoundException("User " + id + " does not exist");
+        }
+    }
+
     @Override
     public ScimUser delete(String id, int version, String zoneId) {
         ScimUser user = retrieve(id, zoneId);
@@ -519,6 +542,10 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
 
     @Override
     public void updateLastLogonTime(String id, String zoneId) {
+        if (lastLogonTimeWriter != null) {
+            lastLogonTimeWriter.updateLastLogonTime(id, zoneId);
+            return;
+        }
         jdbcTemplate.update(UPDATE_LAST_LOGON_TIME_SQL, timeService.getCurrentTimeMillis(), id, zoneId);
     }
 }
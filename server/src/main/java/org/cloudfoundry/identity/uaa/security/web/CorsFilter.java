@@ -13,6 +13,8 @@
 
 package org.cloudfoundry.identity.uaa.security.web;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.cloudfoundry.identity.uaa.zone.CorsConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,7 +32,9 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -82,8 +86,12 @@ public class CorsFilter extends OncePerRequestFilter {
     public static final String X_REQUESTED_WITH = "X-Requested-With";
     public static final String WILDCARD = "*";
 
+    public static final int DEFAULT_DECISION_CACHE_SIZE = 1000;
+
     private CorsConfiguration xhrConfiguration = new CorsConfiguration();
     private CorsConfiguration defaultConfiguration = new CorsConfiguration();
+    private int decisionCacheSize = DEFAULT_DECISION_CACHE_SIZE;
+    private volatile Map<CorsConfiguration, CorsDecisions> decisions = Collections.emptyMap();
 
     public CorsFilter() {
         //configure defaults for XHR vs non-XHR requests
@@ -99,7 +107,9 @@ public class CorsFilter extends OncePerRequestFilter {
 
     @PostConstruct
     public void initialize() {
+        Map<CorsConfiguration, CorsDecisions> decisions = new IdentityHashMap<>();
         for (CorsConfiguration configuration : Arrays.asList(xhrConfiguration, defaultConfiguration)) {
+            decisions.put(configuration, new CorsDecisions(decisionCacheSize));
             String type = (configuration == xhrConfiguration ? "xhr" : "default");
             configuration.getAllowedUriPatterns().clear();
             configuration.getAllowedOriginPatterns().clear();
@@ -124,6 +134,15 @@ public class CorsFilter extends OncePerRequestFilter {
                 }
             }
         }
+        this.decisions = decisions;
+    }
+
+    /**
+     * Sets the number of origins and request URIs, per configuration, whose
+     * allow/deny decision is remembered. Takes effect on {@link #initialize()}.
+     */
+    public void setDecisionCacheSize(int decisionCacheSize) {
+        this.decisionCacheSize = decisionCacheSize;
     }
 
 
@@ -161,7 +180,7 @@ public class CorsFilter extends OncePerRequestFilter {
         //Validate if this CORS request is allowed for this method
         String method = request.getMethod();
         if (!isPreflightRequest && !isAllowedMethod(method, configuration)) {
-            logger.debug(String.format("Request with invalid method was rejected: %s", method));
+            logger.debug("Request with invalid method was rejected: {}", method);
             response.sendError(METHOD_NOT_ALLOWED.value(), "Illegal method.");
             return true;
         }
@@ -170,47 +189,70 @@ public class CorsFilter extends OncePerRequestFilter {
         // Validate the origin so we don't reflect back any potentially dangerous content.
         String origin = request.getHeader(ORIGIN);
         // While origin can be a comma delimited list, we don't allow it for CORS
-        URI originURI;
-        try {
-            originURI = new URI(origin);
-        } catch(URISyntaxException e) {
-            logger.debug(String.format("Request with invalid origin was rejected: %s", origin));
+        CorsDecisions cached = decisions.get(configuration);
+        OriginDecision originDecision = cached == null ? null : cached.origins.getIfPresent(origin);
+        if (originDecision == null) {
+            originDecision = getOriginDecision(origin, configuration);
+            if (cached != null) {
+                cached.origins.put(origin, originDecision);
+            }
+        }
+
+        if (originDecision == OriginDecision.INVALID) {
+            logger.debug("Request with invalid origin was rejected: {}", origin);
             response.sendError(FORBIDDEN.value(), "Invalid origin");
             return true;
         }
 
-        if (!isAllowedOrigin(origin, configuration)) {
-            logger.debug(String.format("Request with origin: %s was rejected because it didn't match allowed origins", origin));
+        if (originDecision == OriginDecision.REJECTED) {
+            logger.debug("Request with origin: {} was rejected because it didn't match allowed origins", origin);
             response.sendError(FORBIDDEN.value(), "Illegal origin");
             return true;
         }
 
         String requestUri = request.getRequestURI();
-        if (!isAllowedRequestUri(requestUri, configuration)) {
-            logger.debug(String.format("Request with URI: %s was rejected because it didn't match allowed URIs", requestUri));
+        Boolean allowedUri = cached == null || requestUri == null ? null : cached.uris.getIfPresent(requestUri);
+        if (allowedUri == null) {
+            allowedUri = isAllowedRequestUri(requestUri, configuration);
+            if (cached != null && requestUri != null) {
+                cached.uris.put(requestUri, allowedUri);
+            }
+        }
+        if (!allowedUri) {
+            logger.debug("Request with URI: {} was rejected because it didn't match allowed URIs", requestUri);
             response.sendError(FORBIDDEN.value(), "Illegal request URI");
             return true;
         }
 
         if (configuration.isAllowedCredentials()) {
             //if we allow credentials, send back the actual origin
-            response.addHeader(ACCESS_CONTROL_ALLOW_ORIGIN, originURI.toString());
+            //URI.toString() of a parsed origin is the origin itself
+            response.addHeader(ACCESS_CONTROL_ALLOW_ORIGIN, origin);
         } else {
             //send back a wildcard, this will prevent credentials
             response.addHeader(ACCESS_CONTROL_ALLOW_ORIGIN, WILDCARD);
         }
 
         if (isPreflightRequest) {
-            logger.debug(String.format("Request is a pre-flight request"));
+            logger.debug("Request is a pre-flight request");
             buildCorsPreFlightResponse(request, response, configuration);
         } else {
-            logger.debug(String.format("Request cross origin request has passed validation."));
+            logger.debug("Request cross origin request has passed validation.");
             filterChain.doFilter(request, response);
         }
 
         return false;
     }
 
+    private OriginDecision getOriginDecision(String origin, CorsConfiguration configuration) {
+        try {
+            new URI(origin);
+        } catch(URISyntaxException e) {
+            return OriginDecision.INVALID;
+        }
+        return isAllowedOrigin(origin, configuration) ? OriginDecision.ALLOWED : OriginDecision.REJECTED;
+    }
+
     /**
      * Returns true if we believe this is an XHR request
      * We look for the presence of the X-Requested-With header
@@ -276,7 +318,7 @@ public class CorsFilter extends OncePerRequestFilter {
         }
 
         //add all methods that we allow
-        response.addHeader(ACCESS_CONTROL_ALLOW_METHODS, buildCommaDelimitedString(configuration.getAllowedMethods()));
+        response.addHeader(ACCESS_CONTROL_ALLOW_METHODS, getAllowedMethodsHeader(configuration));
 
         //we require Access-Control-Request-Headers header
         String accessControlRequestHeaders = request.getHeader(ACCESS_CONTROL_REQUEST_HEADERS);
@@ -295,6 +337,20 @@ public class CorsFilter extends OncePerRequestFilter {
         response.addHeader(ACCESS_CONTROL_MAX_AGE, String.valueOf(configuration.getMaxAge()));
     }
 
+    private String getAllowedMethodsHeader(CorsConfiguration configuration) {
+        CorsDecisions cached = decisions.get(configuration);
+        if (cached == null) {
+            return buildCommaDelimitedString(configuration.getAllowedMethods());
+        }
+        AllowedMethodsHeader header = cached.allowedMethods;
+        //the configuration hands out a new list whenever the allowed methods change
+        if (header == null || header.methods != configuration.getAllowedMethods()) {
+            header = new AllowedMethodsHeader(configuration.getAllowedMethods(), buildCommaDelimitedString(configuration.getAllowedMethods()));
+            cached.allowedMethods = header;
+        }
+        return header.value;
+    }
+
     protected boolean containsHeader(final String accessControlRequestHeaders, final String header) {
         List<String> headers = splitCommaDelimitedString(accessControlRequestHeaders);
         return containsIgnoreCase(headers, header);
@@ -325,7 +381,7 @@ public class CorsFilter extends OncePerRequestFilter {
                 return true;
             }
         }
-        logger.debug(String.format("The '%s' URI does not allow CORS requests.", uri));
+        logger.debug("The '{}' URI does not allow CORS requests.", uri);
         return false;
     }
 
@@ -336,7 +392,7 @@ public class CorsFilter extends OncePerRequestFilter {
                 return true;
             }
         }
-        logger.debug(String.format("The '%s' origin is not allowed to make CORS requests.",origin));
+        logger.debug("The '{}' origin is not allowed to make CORS requests.", origin);
         return false;
     }
     //----------------REQUEST INFO ----------------------------------------------//
@@ -410,4 +466,33 @@ public class CorsFilter extends OncePerRequestFilter {
     public CorsConfiguration getXhrConfiguration() {
         return xhrConfiguration;
     }
+
+    private enum OriginDecision {
+        ALLOWED, REJECTED, INVALID
+    }
+
+    /**
+     * Remembered decisions for one configuration. The allowed patterns only
+     * change in {@link #initialize()}, which starts over with empty caches.
+     */
+    private static class CorsDecisions {
+        private final Cache<String, OriginDecision> origins;
+        private final Cache<String, Boolean> uris;
+        private volatile AllowedMethodsHeader allowedMethods;
+
+        private CorsDecisions(int size) {
+            this.origins = CacheBuilder.newBuilder().maximumSize(size).build();
+            this.uris = CacheBuilder.newBuilder().maximumSize(size).build();
+        }
+    }
+
+    private static class AllowedMethodsHeader {
+        private final List<String> methods;
+        private final String value;
+
+        private AllowedMethodsHeader(List<String> methods, String value) {
+            this.methods = methods;
+            this.value = value;
+        }
+    }
 }
\ No newline at end of file
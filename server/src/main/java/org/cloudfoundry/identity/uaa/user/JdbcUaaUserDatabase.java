@@ -70,6 +70,8 @@ public class JdbcUaaUserDatabase implements UaaUserDatabase {
 
     private boolean caseInsensitive = false;
 
+    private LastLogonTimeWriter lastLogonTimeWriter;
+
     public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
@@ -82,6 +84,10 @@ public class JdbcUaaUserDatabase implements UaaUserDatabase {
         this.caseInsensitive = caseInsensitive;
     }
 
+    public void setLastLogonTimeWriter(LastLogonTimeWriter lastLogonTimeWriter) {
+        this.lastLogonTimeWriter = lastLogonTimeWriter;
+    }
+
     public RowMapper<UaaUser> getMapper() {
         return mapper;
     }
@@ -156,7 +162,11 @@ public class JdbcUaaUserDatabase implements UaaUserDatabase {
 
     @Override
     public void updateLastLogonTime(String userId) {
-        int update = jdbcTemplate.update(DEFAULT_UPDATE_USER_LAST_LOGON, timeService.getCurrentTimeMillis(), userId, IdentityZoneHolder.get().getId());
+        if (lastLogonTimeWriter != null) {
+            lastLogonTimeWriter.updateLastLogonTime(userId, IdentityZoneHolder.get().getId());
+            return;
+        }
+        jdbcTemplate.update(DEFAULT_UPDATE_USER_LAST_LOGON, timeService.getCurrentTimeMillis(), userId, IdentityZoneHolder.get().getId());
     }
 
     private final class UserInfoRowMapper implements RowMapper<UserInfo> {
@@ -0,0 +1,230 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.user;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the last and previous logon times of users.
+ * <p>
+ * With a flush interval of zero, the default, every logon is written right away.
+ * Otherwise logons are queued and written by a background thread once per interval
+ * with JDBC batch updates. Several logons of the same user within one interval
+ * become a single update, which takes the pressure off the rows of clients and
+ * service users that log in many times per second. The logon times read back from
+ * the database may then lag behind by up to one flush interval.
+ * <p>
+ * When more than {@code maxPendingUsers} users are waiting to be written, further
+ * logons are written right away instead of being queued.
+ */
+@ManagedResource(
+    objectName="cloudfoundry.identity:name=LastLogonTimeWriter",
+    description = "UAA Last Logon Time Writer"
+)
+public class LastLogonTimeWriter implements InitializingBean, DisposableBean {
+
+    public static final String UPDATE_LAST_LOGON = JdbcUaaUserDatabase.DEFAULT_UPDATE_USER_LAST_LOGON;
+    public static final String UPDATE_LAST_AND_PREVIOUS_LOGON = "update users set previous_logon_success_time = ?, last_logon_success_time = ? where id = ? and identity_zone_id=?";
+
+    private static Log logger = LogFactory.getLog(LastLogonTimeWriter.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TimeService timeService;
+    private final ConcurrentMap<List<String>, PendingLogon> pending = new ConcurrentHashMap<>();
+
+    private long flushInterval = 0;
+    private int maxPendingUsers = 10000;
+    private ScheduledExecutorService executor;
+
+    private final AtomicLong logons = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushTime = new AtomicLong();
+    private volatile long lastFlushTime = 0;
+    private volatile long maxFlushTime = 0;
+
+    public LastLogonTimeWriter(JdbcTemplate jdbcTemplate, TimeService timeService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.timeService = timeService;
+    }
+
+    /**
+     * @param flushInterval how long, in milliseconds, logons are collected before they are
+     *                      written. Zero writes every logon right away.
+     */
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setMaxPendingUsers(int maxPendingUsers) {
+        this.maxPendingUsers = maxPendingUsers;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (flushInterval > 0) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "uaa-last-logon-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        flushQuietly();
+    }
+
+    public void updateLastLogonTime(String userId, String zoneId) {
+        long now = timeService.getCurrentTimeMillis();
+        logons.incrementAndGet();
+        if (flushInterval <= 0 || (pending.size() >= maxPendingUsers && !pending.containsKey(Arrays.asList(userId, zoneId)))) {
+            writes.incrementAndGet();
+            jdbcTemplate.update(UPDATE_LAST_LOGON, now, userId, zoneId);
+            return;
+        }
+        pending.merge(Arrays.asList(userId, zoneId), new PendingLogon(now), PendingLogon::then);
+    }
+
+    /**
+     * Writes all queued logons.
+     * @return the number of users written
+     */
+    @ManagedOperation(description = "Writes all queued logon times now")
+    public int flush() {
+        long start = System.nanoTime();
+        List<Object[]> lastLogons = new ArrayList<>();
+        List<Object[]> lastAndPreviousLogons = new ArrayList<>();
+        for (List<String> key : new ArrayList<>(pending.keySet())) {
+            PendingLogon logon = pending.remove(key);
+            if (logon == null) {
+                continue;
+            }
+            if (logon.previous == null) {
+                lastLogons.add(new Object[] {logon.last, key.get(0), key.get(1)});
+            } else {
+                lastAndPreviousLogons.add(new Object[] {logon.previous, logon.last, key.get(0), key.get(1)});
+            }
+        }
+        if (!lastLogons.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_LAST_LOGON, lastLogons);
+        }
+        if (!lastAndPreviousLogons.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_LAST_AND_PREVIOUS_LOGON, lastAndPreviousLogons);
+        }
+        int count = lastLogons.size() + lastAndPreviousLogons.size();
+        if (count > 0) {
+            long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            writes.addAndGet(count);
+            flushes.incrementAndGet();
+            flushTime.addAndGet(time);
+            lastFlushTime = time;
+            maxFlushTime = Math.max(maxFlushTime, time);
+        }
+        return count;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.warn("Unable to write last logon times.", e);
+        }
+    }
+
+    @ManagedMetric(category = "performance", displayName = "Users with queued logon times")
+    public int getQueueDepth() {
+        return pending.size();
+    }
+
+    @ManagedMetric(category = "performance", displayName = "Logons recorded")
+    public long getLogonCount() {
+        return logons.get();
+    }
+
+    @ManagedMetric(category = "performance", displayName = "Logon rows written")
+    public long getWriteCount() {
+        return writes.get();
+    }
+
+    @ManagedMetric(category = "performance", displayName = "Batched flushes")
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    @ManagedMetric(category = "performance", displayName = "Last flush latency in ms")
+    public long getLastFlushTime() {
+        return lastFlushTime;
+    }
+
+    @ManagedMetric(category = "performance", displayName = "Max flush latency in ms")
+    public long getMaxFlushTime() {
+        return maxFlushTime;
+    }
+
+    @ManagedMetric(category = "performance", displayName = "Average flush latency in ms")
+    public double getAverageFlushTime() {
+        long count = flushes.get();
+        return count == 0 ? 0 : (double) flushTime.get() / count;
+    }
+
+    private static class PendingLogon {
+        private final long last;
+        //null when the previous logon is the one already in the database
+        private final Long previous;
+
+        private PendingLogon(long last) {
+            this(last, null);
+        }
+
+        private PendingLogon(long last, Long previous) {
+            this.last = last;
+            this.previous = previous;
+        }
+
+        private PendingLogon then(PendingLogon next) {
+            return next.last >= last ? new PendingLogon(next.last, last) : new PendingLogon(last, Math.max(next.last, previous == null ? next.last : previous));
+        }
+    }
+}
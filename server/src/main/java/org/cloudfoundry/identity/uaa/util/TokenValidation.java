@@ -75,6 +75,8 @@ public abstract class TokenValidation {
     private final String token;
 
     private final KeyInfoService keyInfoService;
+    private ClientDetails clientDetails;
+    private UaaUser userDetails;
 
     public static TokenValidation buildAccessTokenValidator(String tokenJwtValue, KeyInfoService keyInfoService) {
         AccessTokenValidation validator = new AccessTokenValidation(tokenJwtValue, keyInfoService);
@@ -378,6 +380,14 @@ public abstract class TokenValidation {
     }
 
     public TokenValidation checkRevocableTokenStore(RevocableTokenProvisioning revocableTokenProvisioning) {
+        return checkRevocableTokenStore(revocableTokenProvisioning, null);
+    }
+
+    /**
+     * @param retrievedToken the revocable token already read for this token, as is done
+     *                       for opaque tokens, so it need not be read again. May be null.
+     */
+    public TokenValidation checkRevocableTokenStore(RevocableTokenProvisioning revocableTokenProvisioning, RevocableToken retrievedToken) {
         try {
             String tokenId;
             if (claims.containsKey(ClaimConstants.REVOCABLE) && (boolean) claims.get(ClaimConstants.REVOCABLE)) {
@@ -386,9 +396,13 @@ public abstract class TokenValidation {
                 }
 
                 RevocableToken revocableToken = null;
-                try {
-                    revocableToken = revocableTokenProvisioning.retrieve(tokenId, IdentityZoneHolder.get().getId());
-                } catch (EmptyResultDataAccessException ex) {
+                if (retrievedToken != null && tokenId.equals(retrievedToken.getTokenId())) {
+                    revocableToken = retrievedToken;
+                } else {
+                    try {
+                        revocableToken = revocableTokenProvisioning.retrieve(tokenId, IdentityZoneHolder.get().getId());
+                    } catch (EmptyResultDataAccessException ex) {
+                    }
                 }
 
                 if (revocableToken == null) {
@@ -454,21 +468,35 @@ public abstract class TokenValidation {
 
     protected abstract void validateJtiValue(String jtiValue);
 
+    /**
+     * Loads the client of the token once; later calls return the same client.
+     */
     public ClientDetails getClientDetails(ClientServicesExtension clientDetailsService) {
+        if (clientDetails != null) {
+            return clientDetails;
+        }
         String clientId = (String) claims.get(CID);
         try {
-            return clientDetailsService.loadClientByClientId(clientId, IdentityZoneHolder.get().getId());
+            clientDetails = clientDetailsService.loadClientByClientId(clientId, IdentityZoneHolder.get().getId());
+            return clientDetails;
         } catch (NoSuchClientException x) {
             //happens if the client is deleted and token exist
             throw new InvalidTokenException("Invalid client ID " + clientId);
         }
     }
 
+    /**
+     * Loads the user of the token once; later calls return the same user.
+     */
     public UaaUser getUserDetails(UaaUserDatabase userDatabase) {
+        if (userDetails != null) {
+            return userDetails;
+        }
         String userId = (String) claims.get(USER_ID);
         if (UaaTokenUtils.isUserToken(claims)) {
             try {
-                return userDatabase.retrieveUserById(userId);
+                userDetails = userDatabase.retrieveUserById(userId);
+                return userDetails;
             } catch (UsernameNotFoundException e) {
                 throw new InvalidTokenException("Token bears a non-existent user ID: " + userId);
             }
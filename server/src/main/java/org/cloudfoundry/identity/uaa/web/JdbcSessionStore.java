@@ -0,0 +1,303 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.web;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.SerializationUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps HTTP sessions in the database so that any UAA instance can serve any request.
+ * <p>
+ * A session is one row in {@code uaa_session} plus one row per attribute in
+ * {@code uaa_session_attribute}. Only attributes whose serialized form changed, whether
+ * they were set again or modified in place, and attributes that were removed are
+ * written back. Each write of attributes bumps the session revision. Serialized
+ * attributes are kept in a local cache together with the revision they belong to,
+ * so a request reads the attributes only when another instance changed them. Every
+ * request deserializes its own copy of the attributes.
+ * <p>
+ * Concurrent requests of one session each write their own changes; the last write
+ * of an attribute wins. Changes to a session that was deleted in the meantime, for
+ * instance by a logout on another instance, are dropped.
+ */
+public class JdbcSessionStore {
+
+    public static final String SESSION_TABLE = "uaa_session";
+    public static final String ATTRIBUTE_TABLE = "uaa_session_attribute";
+
+    protected static final String SELECT_SESSION = "select created, last_accessed, max_inactive_interval, revision from " + SESSION_TABLE + " where session_id = ? and expires_at > ?";
+    protected static final String SELECT_ATTRIBUTES = "select attribute_name, attribute_value from " + ATTRIBUTE_TABLE + " where session_id = ?";
+    protected static final String INSERT_SESSION = "insert into " + SESSION_TABLE + " (session_id, created, last_accessed, max_inactive_interval, expires_at, revision) values (?,?,?,?,?,?)";
+    protected static final String SELECT_REVISION = "select revision from " + SESSION_TABLE + " where session_id = ?";
+    protected static final String UPDATE_SESSION = "update " + SESSION_TABLE + " set last_accessed = ?, max_inactive_interval = ?, expires_at = ? where session_id = ?";
+    protected static final String INCREMENT_REVISION = "update " + SESSION_TABLE + " set revision = revision + 1 where session_id = ?";
+    protected static final String TOUCH_SESSION = "update " + SESSION_TABLE + " set last_accessed = ?, expires_at = ? where session_id = ?";
+    protected static final String INSERT_ATTRIBUTE = "insert into " + ATTRIBUTE_TABLE + " (session_id, attribute_name, attribute_value) values (?,?,?)";
+    protected static final String DELETE_ATTRIBUTE = "delete from " + ATTRIBUTE_TABLE + " where session_id = ? and attribute_name = ?";
+    protected static final String DELETE_SESSION = "delete from " + SESSION_TABLE + " where session_id = ?";
+    protected static final String DELETE_SESSION_ATTRIBUTES = "delete from " + ATTRIBUTE_TABLE + " where session_id = ?";
+    protected static final String CHANGE_SESSION_ID = "update " + SESSION_TABLE + " set session_id = ? where session_id = ?";
+    protected static final String CHANGE_ATTRIBUTES_SESSION_ID = "update " + ATTRIBUTE_TABLE + " set session_id = ? where session_id = ?";
+    protected static final String DELETE_EXPIRED_ATTRIBUTES = "delete from " + ATTRIBUTE_TABLE + " where session_id in (select session_id from " + SESSION_TABLE + " where expires_at < ?)";
+    protected static final String DELETE_EXPIRED_SESSIONS = "delete from " + SESSION_TABLE + " where expires_at < ?";
+
+    private static Log logger = LogFactory.getLog(JdbcSessionStore.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TimeService timeService;
+    private final SecureRandom random = new SecureRandom();
+    private final Cache<String, CachedAttributes> cachedAttributes;
+
+    private long touchInterval = 60 * 1000;
+    private long expirationInterval = 60 * 1000;
+    private final AtomicLong lastExpired = new AtomicLong();
+
+    public JdbcSessionStore(JdbcTemplate jdbcTemplate, TimeService timeService, int cacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.timeService = timeService;
+        this.cachedAttributes = CacheBuilder.newBuilder()
+            .maximumSize(cacheSize)
+            .expireAfterAccess(30, TimeUnit.MINUTES)
+            .build();
+    }
+
+    /**
+     * @param touchInterval how long, in milliseconds, an unchanged session may go without
+     *                      its last access time being written. Larger values save writes
+     *                      at the cost of idle timeouts being enforced less precisely.
+     */
+    public void setTouchInterval(long touchInterval) {
+        this.touchInterval = touchInterval;
+    }
+
+    public void setExpirationInterval(long expirationInterval) {
+        this.expirationInterval = expirationInterval;
+    }
+
+    public StoredHttpSession createSession(int maxInactiveInterval) {
+        return new StoredHttpSession(generateId(), timeService.getCurrentTimeMillis(), maxInactiveInterval);
+    }
+
+    public String generateId() {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * @return the session, or null if it does not exist or has expired
+     */
+    public StoredHttpSession load(String id) {
+        long now = timeService.getCurrentTimeMillis();
+        List<long[]> rows = jdbcTemplate.query(
+            SELECT_SESSION,
+            (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2), rs.getInt(3), rs.getLong(4)},
+            id,
+            now
+        );
+        if (rows.isEmpty()) {
+            cachedAttributes.invalidate(id);
+            return null;
+        }
+        long[] row = rows.get(0);
+        Map<String, byte[]> values = loadValues(id, row[3]);
+        Map<String, Object> attributes = new HashMap<>();
+        for (Map.Entry<String, byte[]> value : values.entrySet()) {
+            try {
+                attributes.put(value.getKey(), deserialize(value.getValue()));
+            } catch (IOException | ClassNotFoundException e) {
+                logger.warn("Unable to read session attribute " + value.getKey() + ", ignoring it.", e);
+            }
+        }
+        StoredHttpSession session = new StoredHttpSession(id, row[0], row[1], (int) row[2], row[3], attributes, values);
+        session.setLastAccessedTime(now);
+        return session;
+    }
+
+    private Map<String, byte[]> loadValues(String id, long revision) {
+        CachedAttributes cached = cachedAttributes.getIfPresent(id);
+        if (cached != null && cached.revision == revision) {
+            return cached.values;
+        }
+        Map<String, byte[]> values = new HashMap<>();
+        jdbcTemplate.query(SELECT_ATTRIBUTES, rs -> {
+            values.put(rs.getString(1), rs.getBytes(2));
+        }, id);
+        Map<String, byte[]> result = Collections.unmodifiableMap(values);
+        cachedAttributes.put(id, new CachedAttributes(revision, result));
+        return result;
+    }
+
+    /**
+     * Writes back what changed in the session. Unchanged sessions are only written
+     * when their last access time is older than the touch interval.
+     */
+    public void save(StoredHttpSession session) {
+        String id = session.getId();
+        Map<String, byte[]> storedValues = session.getStoredValues();
+        Map<String, byte[]> values = new HashMap<>();
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        for (String name : session.getRemovedAttributes()) {
+            deletes.add(new Object[] {id, name});
+        }
+        for (Map.Entry<String, Object> attribute : session.getAttributes().entrySet()) {
+            String name = attribute.getKey();
+            byte[] value = serialize(name, attribute.getValue());
+            if (value == null) {
+                if (storedValues.containsKey(name)) {
+                    deletes.add(new Object[] {id, name});
+                }
+            } else {
+                values.put(name, value);
+                if (!Arrays.equals(value, storedValues.get(name))) {
+                    deletes.add(new Object[] {id, name});
+                    inserts.add(new Object[] {id, name, value});
+                }
+            }
+        }
+        for (Map.Entry<String, byte[]> stored : storedValues.entrySet()) {
+            //attributes that could not be read are kept as they are
+            if (!session.getAttributes().containsKey(stored.getKey()) && !session.getRemovedAttributes().contains(stored.getKey())) {
+                values.put(stored.getKey(), stored.getValue());
+            }
+        }
+
+        if (session.isStored() && !session.isDirty() && deletes.isEmpty()) {
+            if (session.getLastAccessedTime() - session.getStoredLastAccessedTime() >= touchInterval) {
+                if (jdbcTemplate.update(TOUCH_SESSION, session.getLastAccessedTime(), session.getExpiresAt(), id) == 0) {
+                    cachedAttributes.invalidate(id);
+                }
+                session.markStored(session.getRevision(), storedValues);
+            }
+            return;
+        }
+
+        if (session.isStored()) {
+            if (jdbcTemplate.update(UPDATE_SESSION, session.getLastAccessedTime(), session.getMaxInactiveInterval(), session.getExpiresAt(), id) == 0) {
+                logger.debug("Session " + id + " no longer exists, dropping its changes.");
+                cachedAttributes.invalidate(id);
+                return;
+            }
+        } else {
+            jdbcTemplate.update(INSERT_SESSION, id, session.getCreationTime(), session.getLastAccessedTime(), session.getMaxInactiveInterval(), session.getExpiresAt(), 0);
+        }
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_ATTRIBUTE, deletes);
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ATTRIBUTE, inserts);
+        }
+        //the revision is bumped after the attributes are written, so a revision never
+        //stands for attributes that are not written yet
+        if (jdbcTemplate.update(INCREMENT_REVISION, id) == 0) {
+            logger.debug("Session " + id + " was deleted while it was written, dropping its changes.");
+            jdbcTemplate.update(DELETE_SESSION_ATTRIBUTES, id);
+            cachedAttributes.invalidate(id);
+            return;
+        }
+        long revision = session.getRevision() + 1;
+        List<Long> revisions = jdbcTemplate.queryForList(SELECT_REVISION, Long.class, id);
+        if (revisions.size() == 1 && revisions.get(0) == revision) {
+            values = Collections.unmodifiableMap(values);
+            cachedAttributes.put(id, new CachedAttributes(revision, values));
+        } else {
+            //another request wrote the session too, so the attributes in the database are
+            //a mix of both and have to be read again
+            cachedAttributes.invalidate(id);
+            revision = revisions.isEmpty() ? revision : revisions.get(0);
+        }
+        session.markStored(revision, values);
+        cleanExpiredSessions();
+    }
+
+    public void delete(String id) {
+        cachedAttributes.invalidate(id);
+        jdbcTemplate.update(DELETE_SESSION_ATTRIBUTES, id);
+        jdbcTemplate.update(DELETE_SESSION, id);
+    }
+
+    public void changeSessionId(String oldId, String newId) {
+        CachedAttributes cached = cachedAttributes.getIfPresent(oldId);
+        cachedAttributes.invalidate(oldId);
+        jdbcTemplate.update(CHANGE_SESSION_ID, newId, oldId);
+        jdbcTemplate.update(CHANGE_ATTRIBUTES_SESSION_ID, newId, oldId);
+        if (cached != null) {
+            cachedAttributes.put(newId, cached);
+        }
+    }
+
+    public int cleanExpiredSessions() {
+        long now = timeService.getCurrentTimeMillis();
+        long lastCheck = lastExpired.get();
+
+        if ((now - lastCheck) > expirationInterval && lastExpired.compareAndSet(lastCheck, now)) {
+            jdbcTemplate.update(DELETE_EXPIRED_ATTRIBUTES, now);
+            int count = jdbcTemplate.update(DELETE_EXPIRED_SESSIONS, now);
+            logger.debug("Session sweeper complete, deleted " + count + " sessions.");
+            return count;
+        }
+        return 0;
+    }
+
+    private byte[] serialize(String name, Object value) {
+        if (!(value instanceof Serializable)) {
+            logger.debug("Session attribute " + name + " of type " + value.getClass().getName() + " is not serializable, it is not stored and is lost when the request ends.");
+            return null;
+        }
+        return SerializationUtils.serialize(value);
+    }
+
+    private Object deserialize(byte[] value) throws IOException, ClassNotFoundException {
+        if (value == null) {
+            return null;
+        }
+        try (ObjectInputStream in = new ConfigurableObjectInputStream(new ByteArrayInputStream(value), Thread.currentThread().getContextClassLoader())) {
+            return in.readObject();
+        }
+    }
+
+    private static class CachedAttributes {
+        private final long revision;
+        private final Map<String, byte[]> values;
+
+        private CachedAttributes(long revision, Map<String, byte[]> values) {
+            this.revision = revision;
+            this.values = values;
+        }
+    }
+}
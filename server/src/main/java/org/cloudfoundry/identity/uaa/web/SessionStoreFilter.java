@@ -0,0 +1,257 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.web;
+
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.SessionCookieConfig;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+
+/**
+ * Replaces the servlet container session with one kept in a {@link JdbcSessionStore},
+ * so that requests of one login flow may be served by different UAA instances.
+ * <p>
+ * The session cookie uses the name, path, domain and flags of the container's
+ * {@link SessionCookieConfig}. Changes are written when the response is committed
+ * through a redirect, an error or a flush, and at the latest when the request completes.
+ * When disabled, requests pass through untouched.
+ */
+public class SessionStoreFilter extends OncePerRequestFilter {
+
+    public static final String DEFAULT_COOKIE_NAME = "JSESSIONID";
+
+    private final JdbcSessionStore sessionStore;
+    private boolean enabled = false;
+    private int maxInactiveInterval = 1800;
+
+    public SessionStoreFilter(JdbcSessionStore sessionStore) {
+        this.sessionStore = sessionStore;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param maxInactiveInterval the idle timeout of new sessions, in seconds
+     */
+    public void setMaxInactiveInterval(int maxInactiveInterval) {
+        this.maxInactiveInterval = maxInactiveInterval;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        if (!enabled) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        SessionStoreRequest storeRequest = new SessionStoreRequest(request, response);
+        try {
+            filterChain.doFilter(storeRequest, new SessionStoreResponse(response, storeRequest));
+        } finally {
+            storeRequest.commitSession();
+        }
+    }
+
+    protected class SessionStoreRequest extends HttpServletRequestWrapper {
+        private final HttpServletResponse response;
+        private StoredHttpSession session;
+        private boolean requestedSessionLoaded;
+        private String requestedSessionId;
+
+        public SessionStoreRequest(HttpServletRequest request, HttpServletResponse response) {
+            super(request);
+            this.response = response;
+        }
+
+        @Override
+        public HttpSession getSession() {
+            return getSession(true);
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            if (session != null && !session.isInvalidated()) {
+                return session;
+            }
+            if (!requestedSessionLoaded) {
+                requestedSessionLoaded = true;
+                String id = getRequestedSessionId();
+                if (id != null) {
+                    session = sessionStore.load(id);
+                }
+                if (session != null) {
+                    session.setServletContext(getServletContext());
+                    return session;
+                }
+            }
+            if (!create) {
+                return null;
+            }
+            if (session != null && session.isInvalidated() && session.isStored()) {
+                sessionStore.delete(session.getId());
+            }
+            session = sessionStore.createSession(maxInactiveInterval);
+            session.setServletContext(getServletContext());
+            writeCookie(session.getId(), false);
+            return session;
+        }
+
+        @Override
+        public String changeSessionId() {
+            HttpSession current = getSession(false);
+            if (current == null) {
+                throw new IllegalStateException("No session is associated with this request.");
+            }
+            String oldId = session.getId();
+            String newId = sessionStore.generateId();
+            if (session.isStored()) {
+                sessionStore.changeSessionId(oldId, newId);
+            }
+            session.setId(newId);
+            writeCookie(newId, false);
+            return newId;
+        }
+
+        @Override
+        public String getRequestedSessionId() {
+            if (requestedSessionId == null) {
+                Cookie[] cookies = getCookies();
+                if (cookies != null) {
+                    String name = getCookieName();
+                    for (Cookie cookie : cookies) {
+                        if (name.equals(cookie.getName()) && StringUtils.hasText(cookie.getValue())) {
+                            requestedSessionId = cookie.getValue();
+                            break;
+                        }
+                    }
+                }
+            }
+            return requestedSessionId;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdValid() {
+            HttpSession current = getSession(false);
+            return current != null && current.getId().equals(getRequestedSessionId());
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromCookie() {
+            return getRequestedSessionId() != null;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromURL() {
+            return false;
+        }
+
+        @Override
+        @Deprecated
+        public boolean isRequestedSessionIdFromUrl() {
+            return false;
+        }
+
+        protected void commitSession() {
+            if (session == null) {
+                return;
+            }
+            if (session.isInvalidated()) {
+                if (session.isStored()) {
+                    sessionStore.delete(session.getId());
+                }
+                if (!response.isCommitted()) {
+                    writeCookie("", true);
+                }
+                session = null;
+                return;
+            }
+            sessionStore.save(session);
+        }
+
+        private String getCookieName() {
+            SessionCookieConfig config = getServletContext().getSessionCookieConfig();
+            return config == null || !StringUtils.hasText(config.getName()) ? DEFAULT_COOKIE_NAME : config.getName();
+        }
+
+        private void writeCookie(String value, boolean expire) {
+            Cookie cookie = new Cookie(getCookieName(), value);
+            SessionCookieConfig config = getServletContext().getSessionCookieConfig();
+            String path = StringUtils.hasText(getContextPath()) ? getContextPath() : "/";
+            int maxAge = -1;
+            if (config != null) {
+                if (StringUtils.hasText(config.getDomain())) {
+                    cookie.setDomain(config.getDomain());
+                }
+                if (config.getPath() != null) {
+                    path = config.getPath();
+                }
+                cookie.setHttpOnly(config.isHttpOnly());
+                cookie.setSecure(config.isSecure() || isSecure());
+                maxAge = config.getMaxAge();
+            }
+            cookie.setPath(path);
+            cookie.setMaxAge(expire ? 0 : maxAge);
+            response.addCookie(cookie);
+        }
+    }
+
+    protected static class SessionStoreResponse extends HttpServletResponseWrapper {
+        private final SessionStoreRequest request;
+
+        public SessionStoreResponse(HttpServletResponse response, SessionStoreRequest request) {
+            super(response);
+            this.request = request;
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            request.commitSession();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            request.commitSession();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            request.commitSession();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            request.commitSession();
+            super.flushBuffer();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.web;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionContext;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link HttpSession} persisted by a {@link JdbcSessionStore}. It keeps the serialized
+ * form of the attributes as they were loaded, so that attributes that were set, removed
+ * or changed in place can be told apart from unchanged ones and only those are written back.
+ */
+public class StoredHttpSession implements HttpSession {
+
+    private String id;
+    private final long creationTime;
+    private long lastAccessedTime;
+    private int maxInactiveInterval;
+    private long revision;
+    private long storedLastAccessedTime;
+    private final Map<String, Object> attributes;
+    private Map<String, byte[]> storedValues;
+    private final Set<String> removedAttributes = new HashSet<>();
+    private boolean isNew;
+    private boolean intervalChanged;
+    private boolean invalidated;
+    private ServletContext servletContext;
+
+    public StoredHttpSession(String id, long now, int maxInactiveInterval) {
+        this(id, now, now, maxInactiveInterval, 0, new HashMap<>(), new HashMap<>());
+        this.isNew = true;
+    }
+
+    StoredHttpSession(String id,
+                      long creationTime,
+                      long lastAccessedTime,
+                      int maxInactiveInterval,
+                      long revision,
+                      Map<String, Object> attributes,
+                      Map<String, byte[]> storedValues) {
+        this.id = id;
+        this.creationTime = creationTime;
+        this.lastAccessedTime = lastAccessedTime;
+        this.storedLastAccessedTime = lastAccessedTime;
+        this.maxInactiveInterval = maxInactiveInterval;
+        this.revision = revision;
+        this.attributes = attributes;
+        this.storedValues = storedValues;
+    }
+
+    @Override
+    public long getCreationTime() {
+        checkValid();
+        return creationTime;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    void setId(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        checkValid();
+        return lastAccessedTime;
+    }
+
+    void setLastAccessedTime(long lastAccessedTime) {
+        this.lastAccessedTime = lastAccessedTime;
+    }
+
+    long getStoredLastAccessedTime() {
+        return storedLastAccessedTime;
+    }
+
+    long getRevision() {
+        return revision;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return servletContext;
+    }
+
+    void setServletContext(ServletContext servletContext) {
+        this.servletContext = servletContext;
+    }
+
+    @Override
+    public void setMaxInactiveInterval(int interval) {
+        intervalChanged |= interval != this.maxInactiveInterval;
+        this.maxInactiveInterval = interval;
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    long getExpiresAt() {
+        return maxInactiveInterval <= 0 ? Long.MAX_VALUE : lastAccessedTime + maxInactiveInterval * 1000L;
+    }
+
+    @Override
+    @Deprecated
+    public HttpSessionContext getSessionContext() {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        checkValid();
+        return attributes.get(name);
+    }
+
+    @Override
+    @Deprecated
+    public Object getValue(String name) {
+        return getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        checkValid();
+        return Collections.enumeration(new HashSet<>(attributes.keySet()));
+    }
+
+    @Override
+    @Deprecated
+    public String[] getValueNames() {
+        checkValid();
+        return attributes.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        checkValid();
+        if (value == null) {
+            removeAttribute(name);
+            return;
+        }
+        attributes.put(name, value);
+        removedAttributes.remove(name);
+    }
+
+    @Override
+    @Deprecated
+    public void putValue(String name, Object value) {
+        setAttribute(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        checkValid();
+        attributes.remove(name);
+        if (storedValues.containsKey(name)) {
+            removedAttributes.add(name);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public void removeValue(String name) {
+        removeAttribute(name);
+    }
+
+    @Override
+    public void invalidate() {
+        checkValid();
+        invalidated = true;
+    }
+
+    @Override
+    public boolean isNew() {
+        checkValid();
+        return isNew;
+    }
+
+    boolean isInvalidated() {
+        return invalidated;
+    }
+
+    boolean isStored() {
+        return !isNew;
+    }
+
+    boolean isDirty() {
+        return isNew || intervalChanged || !removedAttributes.isEmpty();
+    }
+
+    Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    Map<String, byte[]> getStoredValues() {
+        return storedValues;
+    }
+
+    Set<String> getRemovedAttributes() {
+        return removedAttributes;
+    }
+
+    void markStored(long revision, Map<String, byte[]> storedValues) {
+        this.revision = revision;
+        this.storedValues = storedValues;
+        this.storedLastAccessedTime = lastAccessedTime;
+        isNew = false;
+        intervalChanged = false;
+        removedAttributes.clear();
+    }
+
+    private void checkValid() {
+        if (invalidated) {
+            throw new IllegalStateException("Session " + id + " has been invalidated.");
+        }
+    }
+}
@@ -29,7 +29,8 @@ public class IdentityZoneHolder {
         IdentityZoneHolder.provisioning = provisioning;
     }
 
-    private static final ThreadLocal<IdentityZoneWithKeyManager> THREADLOCAL = new InheritableThreadLocal<IdentityZoneWithKeyManager>() {
+    //not inherited, so threads created while serving a request do not keep its zone
+    private static final ThreadLocal<IdentityZoneWithKeyManager> THREADLOCAL = new ThreadLocal<IdentityZoneWithKeyManager>() {
         @Override
         protected IdentityZoneWithKeyManager initialValue() {
             if (provisioning==null) {
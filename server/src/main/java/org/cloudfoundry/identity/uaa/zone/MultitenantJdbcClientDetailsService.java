@@ -93,7 +93,7 @@ public class MultitenantJdbcClientDetailsService extends ClientServicesExtension
 
     private static final String DEFAULT_UPDATE_SECRET_STATEMENT =
         "update oauth_client_details "
-            + "set client_secret = ? where client_id = ? and identity_zone_id = ?";
+            + "set client_secret = ?, lastmodified = ? where client_id = ? and identity_zone_id = ?";
 
     static final String DEFAULT_DELETE_STATEMENT =
         "delete from oauth_client_details where client_id = ? and identity_zone_id = ?";
@@ -156,7 +156,7 @@ public class MultitenantJdbcClientDetailsService extends ClientServicesExtension
 
     @Override
     public void updateClientSecret(String clientId, String secret, String zoneId) throws NoSuchClientException {
-        int count = jdbcTemplate.update(DEFAULT_UPDATE_SECRET_STATEMENT, passwordEncoder.encode(secret), clientId, zoneId);
+        int count = jdbcTemplate.update(DEFAULT_UPDATE_SECRET_STATEMENT, passwordEncoder.encode(secret), new Timestamp(System.currentTimeMillis()), clientId, zoneId);
         if (count != 1) {
             throw new NoSuchClientException("No client found with id = " + clientId);
         }
@@ -261,7 +261,7 @@ public class MultitenantJdbcClientDetailsService extends ClientServicesExtension
         StringBuilder newSecretBuilder = new StringBuilder()
             .append(clientDetails.getClientSecret()==null ? "" : clientDetails.getClientSecret() +" ")
             .append(encodedNewSecret);
-        int count = jdbcTemplate.update(DEFAULT_UPDATE_SECRET_STATEMENT, newSecretBuilder.toString(), clientId, zoneId);
+        int count = jdbcTemplate.update(DEFAULT_UPDATE_SECRET_STATEMENT, newSecretBuilder.toString(), new Timestamp(System.currentTimeMillis()), clientId, zoneId);
         if (count != 1) {
             throw new NoSuchClientException("No client found with id = " + clientId);
         }
@@ -271,7 +271,7 @@ public class MultitenantJdbcClientDetailsService extends ClientServicesExtension
     public void deleteClientSecret(String clientId, String zoneId) throws NoSuchClientException {
         ClientDetails clientDetails = loadClientByClientId(clientId, zoneId);
         String clientSecret = clientDetails.getClientSecret().split(" ")[1];
-        int count = jdbcTemplate.update(DEFAULT_UPDATE_SECRET_STATEMENT, clientSecret, clientId, zoneId);
+        int count = jdbcTemplate.update(DEFAULT_UPDATE_SECRET_STATEMENT, clientSecret, new Timestamp(System.currentTimeMillis()), clientId, zoneId);
         if (count != 1) {
             throw new NoSuchClientException("Unable to update client with " + clientId);
         }
@@ -0,0 +1,6 @@
+CREATE TABLE redeemed_code (
+   code_id VARCHAR(32) NOT NULL PRIMARY KEY,
+   expires_at BIGINT NOT NULL
+);
+
+CREATE INDEX redeemed_code_expires_at ON redeemed_code (expires_at);
@@ -0,0 +1,4 @@
+CREATE TABLE revocable_token_epoch (
+   identity_zone_id VARCHAR(36) NOT NULL PRIMARY KEY,
+   epoch BIGINT DEFAULT 0 NOT NULL
+);
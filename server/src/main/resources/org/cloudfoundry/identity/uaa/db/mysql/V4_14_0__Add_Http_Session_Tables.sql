@@ -0,0 +1,17 @@
+CREATE TABLE uaa_session (
+   session_id VARCHAR(64) NOT NULL PRIMARY KEY,
+   created BIGINT NOT NULL,
+   last_accessed BIGINT NOT NULL,
+   max_inactive_interval INTEGER NOT NULL,
+   expires_at BIGINT NOT NULL,
+   revision BIGINT DEFAULT 0 NOT NULL
+);
+
+CREATE INDEX uaa_session_expires_at ON uaa_session (expires_at);
+
+CREATE TABLE uaa_session_attribute (
+   session_id VARCHAR(64) NOT NULL,
+   attribute_name VARCHAR(255) NOT NULL,
+   attribute_value LONGBLOB,
+   PRIMARY KEY (session_id, attribute_name)
+);
@@ -79,6 +79,7 @@ import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -506,7 +507,7 @@ public class ClientAdminEndpointsTests {
 
     @Test
     public void testFindClientDetails() throws Exception {
-        Mockito.when(clientDetailsService.query("filter", "sortBy", true, IdentityZoneHolder.get().getId())).thenReturn(
+        Mockito.when(clientDetailsService.query("filter", "sortBy", true, IdentityZoneHolder.get().getId(), 100)).thenReturn(
             Arrays.<ClientDetails> asList(detail));
         SearchResults<?> result = endpoints.listClientDetails("client_id", "filter", "sortBy", "ascending", 1, 100);
         assertEquals(1, result.getResources().size());
@@ -518,13 +519,13 @@ public class ClientAdminEndpointsTests {
 
     @Test(expected = UaaException.class)
     public void testFindClientDetailsInvalidFilter() throws Exception {
-        Mockito.when(clientDetailsService.query("filter", "sortBy", true, IdentityZoneHolder.get().getId())).thenThrow(new IllegalArgumentException());
+        Mockito.when(clientDetailsService.query("filter", "sortBy", true, IdentityZoneHolder.get().getId(), 100)).thenThrow(new IllegalArgumentException());
         endpoints.listClientDetails("client_id", "filter", "sortBy", "ascending", 1, 100);
     }
 
     @Test
     public void testFindClientDetails_Test_Attribute_Filter() throws Exception {
-        when(clientDetailsService.query(anyString(), anyString(), anyBoolean(), eq(IdentityZoneHolder.get().getId()))).thenReturn(Arrays.asList(inputs));
+        when(clientDetailsService.query(anyString(), anyString(), anyBoolean(), eq(IdentityZoneHolder.get().getId()), anyInt())).thenReturn(Arrays.asList(inputs));
         for (String attribute : Arrays.asList("client_id", "resource_ids", "authorized_grant_types", "redirect_uri", "access_token_validity", "refresh_token_validity", "autoapprove","additionalinformation")) {
             SearchResults<Map<String, Object>> result = (SearchResults<Map<String, Object>>) endpoints.listClientDetails(attribute, "client_id pr", "sortBy", "ascending", 1, 100);
             validateAttributeResults(result, 5, Arrays.asList(attribute));
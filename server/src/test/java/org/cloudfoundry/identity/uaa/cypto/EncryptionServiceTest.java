@@ -5,6 +5,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.security.Security;
+import java.util.Arrays;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
@@ -38,6 +39,21 @@ public class EncryptionServiceTest {
         assertThat(ciphertext1, not(ciphertext2));
     }
 
+    @Test
+    public void encrypt_shouldReuseDerivedKey() throws EncryptionServiceException {
+        byte[] ciphertext1 = service.encrypt("bob");
+        byte[] ciphertext2 = service.encrypt("bob");
+        assertThat(Arrays.copyOfRange(ciphertext1, 0, 12), not(Arrays.copyOfRange(ciphertext2, 0, 12)));
+        assertThat(Arrays.copyOfRange(ciphertext1, 12, 44), is(Arrays.copyOfRange(ciphertext2, 12, 44)));
+    }
+
+    @Test
+    public void decrypt_shouldDecryptWithSaltOfOtherInstance() throws EncryptionServiceException {
+        byte[] ciphertext = new EncryptionService("some-password").encrypt("bob");
+        assertThat(new String(service.decrypt(ciphertext)), is("bob"));
+        assertThat(new String(service.decrypt(ciphertext)), is("bob"));
+    }
+
     @Test(expected = EncryptionServiceException.class)
     public void decrypt_shouldNotDecryptWithInvalidPassphrase() throws EncryptionServiceException {
         byte[] ciphertext = service.encrypt("bob");
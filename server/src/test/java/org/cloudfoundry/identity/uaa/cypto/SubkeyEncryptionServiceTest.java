@@ -0,0 +1,62 @@
+package org.cloudfoundry.identity.uaa.cypto;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.security.Security;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+
+public class SubkeyEncryptionServiceTest {
+    private SubkeyEncryptionService service;
+
+    @BeforeClass
+    public static void key() {
+        Security.setProperty("crypto.policy", "unlimited");
+    }
+
+    @Before
+    public void setup() {
+        service = new SubkeyEncryptionService("some-password", "purpose");
+    }
+
+    @Test
+    public void encrypt_shouldEncrypt() throws EncryptionServiceException {
+        byte[] ciphertext = service.encrypt("bob".getBytes());
+        assertThat(new String(service.decrypt(ciphertext)), is("bob"));
+    }
+
+    @Test
+    public void encrypt_shouldUseNewSubkeyEachTime() throws EncryptionServiceException {
+        byte[] ciphertext1 = service.encrypt("bob".getBytes());
+        byte[] ciphertext2 = service.encrypt("bob".getBytes());
+        assertThat(Arrays.copyOfRange(ciphertext1, 0, 32), not(Arrays.copyOfRange(ciphertext2, 0, 32)));
+    }
+
+    @Test
+    public void decrypt_shouldDecryptValuesOfOtherInstance() throws EncryptionServiceException {
+        byte[] ciphertext = new SubkeyEncryptionService("some-password", "purpose").encrypt("bob".getBytes());
+        assertThat(new String(service.decrypt(ciphertext)), is("bob"));
+    }
+
+    @Test(expected = EncryptionServiceException.class)
+    public void decrypt_shouldNotDecryptForOtherPurpose() throws EncryptionServiceException {
+        byte[] ciphertext = service.encrypt("bob".getBytes());
+        new SubkeyEncryptionService("some-password", "other-purpose").decrypt(ciphertext);
+    }
+
+    @Test(expected = EncryptionServiceException.class)
+    public void decrypt_shouldNotDecryptWithInvalidPassphrase() throws EncryptionServiceException {
+        byte[] ciphertext = service.encrypt("bob".getBytes());
+        new SubkeyEncryptionService("invalid-password", "purpose").decrypt(ciphertext);
+    }
+
+    @Test(expected = EncryptionServiceException.class)
+    public void decrypt_shouldRejectTruncatedValue() throws EncryptionServiceException {
+        service.decrypt(new byte[20]);
+    }
+}
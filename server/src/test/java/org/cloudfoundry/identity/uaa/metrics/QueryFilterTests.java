@@ -20,20 +20,20 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertNotNull;
-import static org.junit.Assert.assertTrue;
 
 public class QueryFilterTests {
 
     private RequestMetric metric;
     private QueryFilter filter;
+    private QueryStatistics statistics;
 
     @Before
     public void setup() {
         metric = new RequestMetric();
         MetricsAccessor.setCurrent(metric);
         filter = new QueryFilter();
+        statistics = new QueryStatistics(10);
+        filter.setQueryStatistics(statistics);
     }
 
     @After
@@ -46,34 +46,56 @@ public class QueryFilterTests {
     public void reportUnsuccessfulQuery() throws Exception {
         long start = System.currentTimeMillis();
         filter.reportFailedQuery("query", null, "name", start, null);
-        assertNotNull(metric.getQueries());
-        assertEquals(1, metric.getQueries().size());
-        assertEquals("query", metric.getQueries().get(0).getQuery());
-        assertEquals(start, metric.getQueries().get(0).getRequestStartTime());
-        assertFalse(metric.getQueries().get(0).isIntolerable());
+        assertEquals(1, metric.getNrOfDatabaseQueries());
+        assertEquals(0, metric.getNrOfIntolerableQueries());
+        assertEquals(1, statistics.getStatements().size());
+        StatementStatistics query = statistics.getStatements().get(0);
+        assertEquals("query", query.getStatement());
+        assertEquals(1, query.getCalls());
+        assertEquals(1, query.getFailures());
     }
 
     @Test
     public void reportQuery() throws Exception {
         filter.reportQuery("query", null, "name", 0, 1);
-        assertNotNull(metric.getQueries());
-        assertEquals(1, metric.getQueries().size());
-        assertEquals("query", metric.getQueries().get(0).getQuery());
-        assertEquals(0, metric.getQueries().get(0).getRequestStartTime());
-        assertEquals(1, metric.getQueries().get(0).getRequestCompleteTime());
-        assertFalse(metric.getQueries().get(0).isIntolerable());
+        assertEquals(1, metric.getNrOfDatabaseQueries());
+        assertEquals(1, metric.getDatabaseQueryTime());
+        assertEquals(0, metric.getNrOfIntolerableQueries());
+        StatementStatistics query = statistics.getStatements().get(0);
+        assertEquals("query", query.getStatement());
+        assertEquals(1, query.getCalls());
+        assertEquals(0, query.getFailures());
+        assertEquals(1, query.getTotalTime());
+        assertEquals(0, query.getIntolerableCount());
     }
 
     @Test
     public void reportSlowQuery() throws Exception {
         long delta = filter.getThreshold() + 10;
         filter.reportSlowQuery("query", null, "name", 0, delta);
-        assertNotNull(metric.getQueries());
-        assertEquals(1, metric.getQueries().size());
-        assertEquals("query", metric.getQueries().get(0).getQuery());
-        assertEquals(0, metric.getQueries().get(0).getRequestStartTime());
-        assertEquals(delta, metric.getQueries().get(0).getRequestCompleteTime());
-        assertTrue(metric.getQueries().get(0).isIntolerable());
+        assertEquals(1, metric.getNrOfDatabaseQueries());
+        assertEquals(delta, metric.getDatabaseQueryTime());
+        assertEquals(1, metric.getNrOfIntolerableQueries());
+        assertEquals(delta, metric.getIntolerableQueryTime());
+        StatementStatistics query = statistics.getStatements().get(0);
+        assertEquals(1, query.getIntolerableCount());
+        assertEquals(delta, query.getMaxTime());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void queriesAreAggregatedByStatement() throws Exception {
+        filter.reportQuery("select * from users where id in (?,?)", null, "name", 0, 2);
+        filter.reportQuery("select * from users   where id in (?, ?, ?)", null, "name", 0, 4);
+        filter.reportQuery("select 1", null, "name", 0, 1);
+        assertEquals(3, metric.getNrOfDatabaseQueries());
+        assertEquals(2, statistics.getStatements().size());
+        StatementStatistics users = statistics.getStatements().get(0);
+        assertEquals("select * from users where id in (?)", users.getStatement());
+        assertEquals(2, users.getCalls());
+        assertEquals(6, users.getTotalTime());
+        assertEquals(4, users.getMaxTime());
+        assertEquals(3.0, users.getAverageTime(), 0.001);
+        assertEquals("select ?", statistics.getStatements().get(1).getStatement());
+    }
+
+}
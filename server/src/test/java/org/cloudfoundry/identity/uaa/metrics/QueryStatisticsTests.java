@@ -0,0 +1,82 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.metrics;
+
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QueryStatisticsTests {
+
+    private QueryStatistics statistics;
+
+    @Before
+    public void setup() {
+        statistics = new QueryStatistics(2);
+    }
+
+    @Test
+    public void normalize() {
+        assertEquals("select * from users where id in (?) and origin = ? and version=? limit ?",
+                     QueryStatistics.normalize("select  *\n from users where id in (?, ?,?) and origin = 'it''s' and version=12 limit 5"));
+        assertEquals("select u1.id from users u1 where u1.active=?",
+                     QueryStatistics.normalize("select u1.id from users u1 where u1.active=?"));
+    }
+
+    @Test
+    public void statements_are_bounded() {
+        statistics.record("select a from t", 1, false, false);
+        statistics.record("select b from t", 1, false, false);
+        statistics.record("select c from t", 1, false, false);
+        statistics.record("select d from t", 1, false, false);
+        assertEquals(3, statistics.getStatementCount());
+        Map<String, String> summary = statistics.getSummary();
+        assertTrue(summary.containsKey(QueryStatistics.OTHER_STATEMENTS));
+        assertEquals(2, JsonUtils.readValue(summary.get(QueryStatistics.OTHER_STATEMENTS), Map.class).get("calls"));
+    }
+
+    @Test
+    public void statements_sorted_by_total_time() {
+        statistics.record("select a from t", 1, false, false);
+        statistics.record("select b from t", 10, false, false);
+        assertEquals("select b from t", statistics.getStatements().get(0).getStatement());
+    }
+
+    @Test
+    public void histogram_buckets() {
+        statistics.record("select a from t", 0, false, false);
+        statistics.record("select a from t", 3, false, false);
+        statistics.record("select a from t", 60000, true, true);
+        StatementStatistics stats = statistics.getStatements().get(0);
+        assertEquals(1, stats.getBucketCount(0));
+        assertEquals(1, stats.getBucketCount(StatementStatistics.bucket(5)));
+        assertEquals(1, (long) stats.getHistogram().get("+Inf"));
+        assertEquals(1, stats.getFailures());
+        assertEquals(1, stats.getIntolerableCount());
+    }
+
+    @Test
+    public void reset() {
+        statistics.record("select a from t", 1, false, false);
+        statistics.reset();
+        assertEquals(0, statistics.getStatementCount());
+    }
+}
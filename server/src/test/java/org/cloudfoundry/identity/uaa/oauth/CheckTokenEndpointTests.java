@@ -21,6 +21,7 @@ import org.cloudfoundry.identity.uaa.authentication.UaaAuthenticationTestFactory
 import org.cloudfoundry.identity.uaa.constants.OriginKeys;
 import org.cloudfoundry.identity.uaa.oauth.approval.InMemoryApprovalStore;
 import org.cloudfoundry.identity.uaa.oauth.client.ClientConstants;
+import org.cloudfoundry.identity.uaa.oauth.event.TokenRevocationEvent;
 import org.cloudfoundry.identity.uaa.oauth.openid.IdTokenCreator;
 import org.cloudfoundry.identity.uaa.oauth.openid.IdTokenGranter;
 import org.cloudfoundry.identity.uaa.oauth.refresh.RefreshTokenCreator;
@@ -34,6 +35,7 @@ import org.cloudfoundry.identity.uaa.user.UaaUserDatabase;
 import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.cloudfoundry.identity.uaa.util.TimeService;
 import org.cloudfoundry.identity.uaa.zone.*;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -63,6 +65,8 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(Parameterized.class)
@@ -473,6 +477,65 @@ public class CheckTokenEndpointTests {
         }
     }
 
+    @Test
+    public void testUserIsLoadedOncePerCheck() throws Exception {
+        OAuth2AccessToken accessToken = tokenServices.createAccessToken(authentication);
+        resetAndMockUserDatabase(userId, user);
+
+        Claims claims = endpoint.checkToken(accessToken.getValue(), Collections.emptyList(), request);
+        assertEquals(userId, claims.getUserId());
+        verify(userDatabase, times(1)).retrieveUserById(userId);
+    }
+
+    @Test
+    public void testCachedResponseIsClearedOnRevocation() throws Exception {
+        endpoint.setResponseCacheExpirationTime(60);
+        endpoint.afterPropertiesSet();
+        OAuth2AccessToken accessToken = tokenServices.createAccessToken(authentication);
+        resetAndMockUserDatabase(userId, user);
+
+        endpoint.checkToken(accessToken.getValue(), Collections.emptyList(), request);
+        Claims claims = endpoint.checkToken(accessToken.getValue(), Collections.emptyList(), request);
+        assertEquals(userId, claims.getUserId());
+        verify(userDatabase, times(1)).retrieveUserById(userId);
+
+        endpoint.onApplicationEvent(new TokenRevocationEvent(userId, null, IdentityZoneHolder.get().getId(), authentication));
+        endpoint.checkToken(accessToken.getValue(), Collections.emptyList(), request);
+        verify(userDatabase, times(2)).retrieveUserById(userId);
+    }
+
+    @Test
+    public void testResponseIsNotCachedWhenRevokedDuringCheck() throws Exception {
+        endpoint.setResponseCacheExpirationTime(60);
+        endpoint.afterPropertiesSet();
+        OAuth2AccessToken accessToken = tokenServices.createAccessToken(authentication);
+        resetAndMockUserDatabase(userId, user);
+        when(userDatabase.retrieveUserById(eq(userId))).thenAnswer(invocation -> {
+            endpoint.onApplicationEvent(new TokenRevocationEvent(userId, null, IdentityZoneHolder.get().getId(), authentication));
+            return user;
+        });
+
+        endpoint.checkToken(accessToken.getValue(), Collections.emptyList(), request);
+        endpoint.checkToken(accessToken.getValue(), Collections.emptyList(), request);
+        verify(userDatabase, times(2)).retrieveUserById(userId);
+    }
+
+    @Test
+    public void testCachedResponseIsClearedOnZoneChange() throws Exception {
+        endpoint.setResponseCacheExpirationTime(60);
+        endpoint.afterPropertiesSet();
+        OAuth2AccessToken accessToken = tokenServices.createAccessToken(authentication);
+        resetAndMockUserDatabase(userId, user);
+
+        endpoint.checkToken(accessToken.getValue(), Collections.emptyList(), request);
+        endpoint.checkToken(accessToken.getValue(), Collections.emptyList(), request);
+        verify(userDatabase, times(1)).retrieveUserById(userId);
+
+        endpoint.onApplicationEvent(IdentityZoneModifiedEvent.identityZoneModified(IdentityZoneHolder.get()));
+        endpoint.checkToken(accessToken.getValue(), Collections.emptyList(), request);
+        verify(userDatabase, times(2)).retrieveUserById(userId);
+    }
+
     @Test
     public void testValidateScopeSinglePresent() throws Exception {
         authentication = new OAuth2Authentication(new AuthorizationRequest("client",
@@ -0,0 +1,178 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.oauth;
+
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthentication;
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthenticationDetails;
+import org.cloudfoundry.identity.uaa.authentication.UaaPrincipal;
+import org.cloudfoundry.identity.uaa.constants.OriginKeys;
+import org.cloudfoundry.identity.uaa.cypto.EncryptionKeyService;
+import org.cloudfoundry.identity.uaa.test.JdbcTestBase;
+import org.cloudfoundry.identity.uaa.test.TestUtils;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.cloudfoundry.identity.uaa.zone.MultitenancyFixture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.common.exceptions.InvalidGrantException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+import org.springframework.security.oauth2.provider.code.AuthorizationCodeServices;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class EncryptedAuthorizationCodeServicesTests extends JdbcTestBase {
+
+    private AuthorizationCodeServices delegate = mock(AuthorizationCodeServices.class);
+    private TimeService timeService = mock(TimeService.class);
+    private EncryptionKeyService encryptionKeyService;
+    private EncryptedAuthorizationCodeServices codeServices;
+    private OAuth2Authentication authentication;
+    private UaaPrincipal principal = new UaaPrincipal("userid", "username", "username@test.org", OriginKeys.UAA, null, IdentityZone.getUaa().getId());
+
+    @Before
+    public void setUpCodeServices() throws Exception {
+        TestUtils.deleteFrom(dataSource, "redeemed_code");
+        EncryptionKeyService.EncryptionKey key = new EncryptionKeyService.EncryptionKey();
+        key.put("label", "key-1");
+        key.put("passphrase", "some-passphrase");
+        encryptionKeyService = new EncryptionKeyService("key-1", Collections.singletonList(key));
+        codeServices = newCodeServices();
+        when(timeService.getCurrentTimeMillis()).thenReturn(1000000L);
+
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("client_id", "clientid");
+        parameters.put("redirect_uri", "http://localhost/callback");
+        OAuth2Request request = new OAuth2Request(parameters, "clientid", Collections.emptyList(), true, new HashSet<>(Arrays.asList("openid")), Collections.emptySet(), "http://localhost/callback", new HashSet<>(Arrays.asList("code")), new HashMap<>());
+        UaaAuthentication userAuthentication = new UaaAuthentication(principal, Arrays.asList(new SimpleGrantedAuthority("openid")), new UaaAuthenticationDetails(new MockHttpServletRequest()));
+        authentication = new OAuth2Authentication(request, userAuthentication);
+    }
+
+    @After
+    public void clearZone() {
+        IdentityZoneHolder.clear();
+    }
+
+    private EncryptedAuthorizationCodeServices newCodeServices() {
+        EncryptedAuthorizationCodeServices result = new EncryptedAuthorizationCodeServices(encryptionKeyService, delegate, jdbcTemplate);
+        result.setEnabled(true);
+        result.setTimeService(timeService);
+        return result;
+    }
+
+    @Test
+    public void code_carries_the_authentication() {
+        String code = codeServices.createAuthorizationCode(authentication);
+        assertTrue(code.startsWith(EncryptedAuthorizationCodeServices.CODE_PREFIX));
+        OAuth2Authentication consumed = codeServices.consumeAuthorizationCode(code);
+        assertEquals(principal, consumed.getUserAuthentication().getPrincipal());
+        assertEquals("clientid", consumed.getOAuth2Request().getClientId());
+        assertEquals("http://localhost/callback", consumed.getOAuth2Request().getRedirectUri());
+        assertEquals(authentication.getOAuth2Request().getRequestParameters(), consumed.getOAuth2Request().getRequestParameters());
+        verifyZeroInteractions(delegate);
+    }
+
+    @Test(expected = InvalidGrantException.class)
+    public void code_is_single_use() {
+        String code = codeServices.createAuthorizationCode(authentication);
+        codeServices.consumeAuthorizationCode(code);
+        codeServices.consumeAuthorizationCode(code);
+    }
+
+    @Test(expected = InvalidGrantException.class)
+    public void code_is_single_use_across_instances() {
+        String code = codeServices.createAuthorizationCode(authentication);
+        codeServices.consumeAuthorizationCode(code);
+        newCodeServices().consumeAuthorizationCode(code);
+    }
+
+    @Test
+    public void redeemed_code_ids_are_removed_after_expiry() {
+        codeServices.consumeAuthorizationCode(codeServices.createAuthorizationCode(authentication));
+        assertEquals(1, (int) jdbcTemplate.queryForObject("select count(*) from redeemed_code", Integer.class));
+
+        when(timeService.getCurrentTimeMillis()).thenReturn(1000000L + 2 * UaaTokenStore.EXPIRATION_TIME + 1);
+        codeServices.consumeAuthorizationCode(codeServices.createAuthorizationCode(authentication));
+        assertEquals(1, (int) jdbcTemplate.queryForObject("select count(*) from redeemed_code", Integer.class));
+    }
+
+    @Test(expected = InvalidGrantException.class)
+    public void expired_code_is_rejected() {
+        String code = codeServices.createAuthorizationCode(authentication);
+        when(timeService.getCurrentTimeMillis()).thenReturn(1000000L + UaaTokenStore.EXPIRATION_TIME + 1);
+        codeServices.consumeAuthorizationCode(code);
+    }
+
+    @Test(expected = InvalidGrantException.class)
+    public void tampered_code_is_rejected() {
+        String code = codeServices.createAuthorizationCode(authentication);
+        int position = code.length() - 10;
+        char replacement = code.charAt(position) == 'A' ? 'B' : 'A';
+        codeServices.consumeAuthorizationCode(code.substring(0, position) + replacement + code.substring(position + 1));
+    }
+
+    @Test(expected = InvalidGrantException.class)
+    public void forged_code_is_rejected() {
+        byte[] forged = new byte[200];
+        new Random().nextBytes(forged);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        codeServices.consumeAuthorizationCode(EncryptedAuthorizationCodeServices.CODE_PREFIX + encoder.encodeToString("key-1".getBytes(StandardCharsets.UTF_8)) + "." + encoder.encodeToString(forged));
+    }
+
+    @Test(expected = InvalidGrantException.class)
+    public void code_is_bound_to_its_zone() {
+        String code = codeServices.createAuthorizationCode(authentication);
+        IdentityZoneHolder.set(MultitenancyFixture.identityZone("other-zone", "other-zone"));
+        codeServices.consumeAuthorizationCode(code);
+    }
+
+    @Test
+    public void disabled_uses_delegate_but_still_consumes_encrypted_codes() {
+        String code = codeServices.createAuthorizationCode(authentication);
+        codeServices.setEnabled(false);
+        when(delegate.createAuthorizationCode(any())).thenReturn("abcdefghij");
+        when(delegate.consumeAuthorizationCode("abcdefghij")).thenReturn(authentication);
+
+        assertEquals("abcdefghij", codeServices.createAuthorizationCode(authentication));
+        assertSame(authentication, codeServices.consumeAuthorizationCode("abcdefghij"));
+        assertEquals(principal, codeServices.consumeAuthorizationCode(code).getUserAuthentication().getPrincipal());
+        try {
+            codeServices.consumeAuthorizationCode(code);
+            fail();
+        } catch (InvalidGrantException expected) {
+        }
+    }
+}
@@ -19,6 +19,11 @@ import org.cloudfoundry.identity.uaa.test.JdbcTestBase;
 import org.cloudfoundry.identity.uaa.zone.*;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.security.oauth2.provider.ClientDetails;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.cloudfoundry.identity.uaa.oauth.token.TokenConstants.GRANT_TYPE_AUTHORIZATION_CODE;
 import static org.junit.Assert.assertEquals;
@@ -78,6 +83,15 @@ public class JdbcQueryableClientDetailsServiceTests extends JdbcTestBase {
         assertEquals(4, service.query("scope pr", IdentityZoneHolder.get().getId()).size());
     }
 
+    @Test
+    public void testQueryPage() {
+        addClients();
+        List<ClientDetails> clients = service.query("client_id pr", "client_id", true, IdentityZoneHolder.get().getId(), 2);
+        assertEquals(4, clients.size());
+        List<String> page = clients.subList(1, 3).stream().map(ClientDetails::getClientId).collect(Collectors.toList());
+        assertEquals(Arrays.asList("app", "cf"), page);
+    }
+
     @Test
     public void testQueryEqualsInAnotherZone() {
         testQueryEquals();
@@ -0,0 +1,104 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.oauth;
+
+import org.cloudfoundry.identity.uaa.scim.event.UserModifiedEvent;
+import org.cloudfoundry.identity.uaa.user.UaaUser;
+import org.cloudfoundry.identity.uaa.user.UaaUserPrototype;
+import org.cloudfoundry.identity.uaa.util.UaaTokenUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.oauth2.provider.client.BaseClientDetails;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class RevocationSignatureCacheTests {
+
+    private RevocationSignatureCache cache;
+    private BaseClientDetails client;
+    private UaaUser user;
+
+    @Before
+    public void setUp() {
+        cache = new RevocationSignatureCache(100);
+        client = new BaseClientDetails("client", null, "openid", "password", null);
+        client.setClientSecret("secret1 secret2");
+        client.addAdditionalInformation("lastModified", new Date(1000));
+        user = newUser(new Date(2000), "password");
+    }
+
+    private UaaUser newUser(Date modified, String password) {
+        return new UaaUser(new UaaUserPrototype()
+            .withId("user-id")
+            .withUsername("marissa")
+            .withEmail("marissa@test.org")
+            .withPassword(password)
+            .withSalt("salt")
+            .withModified(modified)
+            .withPasswordLastModified(modified));
+    }
+
+    @Test
+    public void signatures_are_computed_once_per_secret() {
+        List<String> signatures = cache.getSignatures(client, user);
+        assertEquals(Arrays.asList(
+            UaaTokenUtils.getRevocableTokenSignature(client, "secret1", user),
+            UaaTokenUtils.getRevocableTokenSignature(client, "secret2", user)
+        ), signatures);
+        assertSame(signatures, cache.getSignatures(client, user));
+    }
+
+    @Test
+    public void modified_user_gets_new_signatures() {
+        List<String> signatures = cache.getSignatures(client, user);
+        List<String> changed = cache.getSignatures(client, newUser(new Date(3000), "changed"));
+        assertNotEquals(signatures, changed);
+        assertEquals(UaaTokenUtils.getRevocableTokenSignature(client, "secret1", newUser(new Date(3000), "changed")), changed.get(0));
+    }
+
+    @Test
+    public void modified_client_gets_new_signatures() {
+        List<String> signatures = cache.getSignatures(client, user);
+        client.setClientSecret("secret3");
+        client.addAdditionalInformation("lastModified", new Date(4000));
+        List<String> changed = cache.getSignatures(client, user);
+        assertNotEquals(signatures, changed);
+        assertEquals(1, changed.size());
+    }
+
+    @Test
+    public void user_events_clear_the_cache() {
+        List<String> signatures = cache.getSignatures(client, user);
+        cache.onApplicationEvent(UserModifiedEvent.userModified("user-id", "marissa"));
+        assertNotSame(signatures, cache.getSignatures(client, user));
+    }
+
+    @Test
+    public void client_without_modification_time_is_not_cached() {
+        client.setAdditionalInformation(Collections.emptyMap());
+        List<String> signatures = cache.getSignatures(client, user);
+        assertEquals(signatures, cache.getSignatures(client, user));
+        assertNotSame(signatures, cache.getSignatures(client, user));
+    }
+}
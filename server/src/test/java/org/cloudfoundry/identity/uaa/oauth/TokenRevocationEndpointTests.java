@@ -22,7 +22,9 @@ import org.cloudfoundry.identity.uaa.constants.OriginKeys;
 import org.cloudfoundry.identity.uaa.oauth.token.JdbcRevocableTokenProvisioning;
 import org.cloudfoundry.identity.uaa.oauth.token.RevocableToken;
 import org.cloudfoundry.identity.uaa.resources.jdbc.JdbcPagingListFactory;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
 import org.cloudfoundry.identity.uaa.scim.ScimUserProvisioning;
+import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceNotFoundException;
 import org.cloudfoundry.identity.uaa.scim.jdbc.JdbcScimUserProvisioning;
 import org.cloudfoundry.identity.uaa.test.JdbcTestBase;
 import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
@@ -38,6 +40,7 @@ import org.springframework.security.oauth2.provider.ClientDetails;
 import org.springframework.security.oauth2.provider.OAuth2Request;
 import org.springframework.security.oauth2.provider.client.BaseClientDetails;
 
+import java.util.Arrays;
 import java.util.Collections;
 
 import static org.cloudfoundry.identity.uaa.oauth.client.ClientConstants.TOKEN_SALT;
@@ -53,6 +56,7 @@ public class TokenRevocationEndpointTests extends JdbcTestBase {
     private BaseClientDetails client;
     private ApplicationEventPublisher publisher;
     private MultitenantJdbcClientDetailsService clientService;
+    private ScimUserProvisioning userProvisioning;
 
     @Before
     public void setupForTokenRevocation() throws Exception {
@@ -64,7 +68,7 @@ public class TokenRevocationEndpointTests extends JdbcTestBase {
         clientService = spy(new MultitenantJdbcClientDetailsService(jdbcTemplate));
         clientService.addClientDetails(client, zoneId);
 
-        ScimUserProvisioning userProvisioning = new JdbcScimUserProvisioning(
+        userProvisioning = new JdbcScimUserProvisioning(
             jdbcTemplate,
             new JdbcPagingListFactory(jdbcTemplate, limitSqlAdapter)
         );
@@ -113,6 +117,37 @@ public class TokenRevocationEndpointTests extends JdbcTestBase {
         assertEquals(0, clientTokenCount());
     }
 
+    @Test
+    public void revokeTokensForUser() throws Exception {
+        String zoneId = IdentityZoneHolder.get().getId();
+        ScimUser user = new ScimUser(null, generator.generate(), "Given", "Family");
+        user.setPrimaryEmail(user.getUserName() + "@test.org");
+        user = userProvisioning.createUser(user, "password", zoneId);
+        String salt = user.getSalt();
+
+        endpoint.revokeTokensForUser(user.getId());
+        ScimUser revoked = userProvisioning.retrieve(user.getId(), zoneId);
+        assertNotEquals(salt, revoked.getSalt());
+        assertEquals(user.getVersion() + 1, revoked.getVersion());
+    }
+
+    @Test(expected = ScimResourceNotFoundException.class)
+    public void revokeTokensForUnknownUser() throws Exception {
+        endpoint.revokeTokensForUser("unknown-user-id");
+    }
+
+    @Test
+    public void revokeTokensForUserAndClient() throws Exception {
+        String zoneId = IdentityZoneHolder.get().getId();
+        for (String tokenId : Arrays.asList("user-token-1", "user-token-2")) {
+            jdbcTemplate.update("insert into revocable_tokens (token_id, client_id, user_id, format, response_type, issued_at, expires_at, data, identity_zone_id) values (?,?,?,?,?,?,?,?,?)",
+                                tokenId, client.getClientId(), "user-id", "opaque", RevocableToken.TokenType.ACCESS_TOKEN.toString(), 0, Long.MAX_VALUE, "value", zoneId);
+        }
+        assertEquals(3, clientTokenCount());
+        endpoint.revokeTokensForUserAndClient("user-id", client.getClientId());
+        assertEquals(1, clientTokenCount());
+    }
+
     public ClientDetails getClient() {
         return clientService.loadClientByClientId(client.getClientId());
     }
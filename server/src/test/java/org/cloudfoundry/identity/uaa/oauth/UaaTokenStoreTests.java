@@ -14,12 +14,14 @@
 
 package org.cloudfoundry.identity.uaa.oauth;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import org.cloudfoundry.identity.uaa.authentication.UaaAuthentication;
 import org.cloudfoundry.identity.uaa.authentication.UaaAuthenticationDetails;
 import org.cloudfoundry.identity.uaa.authentication.UaaPrincipal;
 import org.cloudfoundry.identity.uaa.constants.OriginKeys;
 import org.cloudfoundry.identity.uaa.oauth.UaaTokenStore;
 import org.cloudfoundry.identity.uaa.test.JdbcTestBase;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.cloudfoundry.identity.uaa.util.UaaStringUtils;
 import org.cloudfoundry.identity.uaa.zone.IdentityZone;
 import org.junit.Before;
@@ -50,6 +52,7 @@ import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Timestamp;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -136,6 +139,77 @@ public class UaaTokenStoreTests extends JdbcTestBase {
         assertThat(userAuthentication.getExternalGroups(), containsInAnyOrder("group1","group2","group3"));
     }
 
+    @Test
+    public void code_is_stored_in_previous_format_by_default() throws Exception {
+        String code = store.createAuthorizationCode(uaaAuthentication);
+        byte[] stored = jdbcTemplate.queryForObject("SELECT authentication FROM oauth_code WHERE code = ?", new Object[] {code}, byte[].class);
+        Map<String,Object> map = JsonUtils.readValue(stored, new TypeReference<Map<String,Object>>() {});
+        assertFalse(map.containsKey("v"));
+        assertTrue(map.containsKey(UaaTokenStore.USER_AUTHENTICATION_UAA_AUTHENTICATION));
+
+        OAuth2Authentication authentication = store.consumeAuthorizationCode(code);
+        assertEquals(uaaAuthentication.getOAuth2Request().getClientId(), authentication.getOAuth2Request().getClientId());
+        assertEquals(principal, authentication.getUserAuthentication().getPrincipal());
+    }
+
+    @Test
+    public void code_is_stored_in_compact_format() throws Exception {
+        store.setCompactFormat(true);
+        String code = store.createAuthorizationCode(uaaAuthentication);
+        byte[] stored = jdbcTemplate.queryForObject("SELECT authentication FROM oauth_code WHERE code = ?", new Object[] {code}, byte[].class);
+        Map<String,Object> map = JsonUtils.readValue(stored, new TypeReference<Map<String,Object>>() {});
+        assertEquals(2, map.get("v"));
+        assertFalse(map.containsKey(UaaTokenStore.USER_AUTHENTICATION_UAA_AUTHENTICATION));
+
+        OAuth2Authentication authentication = store.consumeAuthorizationCode(code);
+        assertEquals(uaaAuthentication.getOAuth2Request().getClientId(), authentication.getOAuth2Request().getClientId());
+        assertEquals(uaaAuthentication.getOAuth2Request().getScope(), authentication.getOAuth2Request().getScope());
+        assertEquals(uaaAuthentication.getOAuth2Request().getRequestParameters(), authentication.getOAuth2Request().getRequestParameters());
+        assertEquals(principal, authentication.getUserAuthentication().getPrincipal());
+    }
+
+    @Test
+    public void code_written_in_previous_format_is_consumed() throws Exception {
+        store = new UaaTokenStore(dataSource) {
+            @Override
+            protected byte[] serializeOauth2Authentication(OAuth2Authentication auth2Authentication) {
+                Map<String, Object> data = new HashMap<>();
+                data.put(USER_AUTHENTICATION_UAA_AUTHENTICATION, JsonUtils.writeValueAsString(auth2Authentication.getUserAuthentication()));
+                data.put(OAUTH2_REQUEST_PARAMETERS, auth2Authentication.getOAuth2Request().getRequestParameters());
+                data.put(OAUTH2_REQUEST_CLIENT_ID, auth2Authentication.getOAuth2Request().getClientId());
+                data.put(OAUTH2_REQUEST_AUTHORITIES, Collections.emptyList());
+                data.put(OAUTH2_REQUEST_APPROVED, true);
+                data.put(OAUTH2_REQUEST_SCOPE, auth2Authentication.getOAuth2Request().getScope());
+                data.put(OAUTH2_REQUEST_RESOURCE_IDS, Collections.emptyList());
+                data.put(OAUTH2_REQUEST_REDIRECT_URI, null);
+                data.put(OAUTH2_REQUEST_RESPONSE_TYPES, Collections.emptyList());
+                return JsonUtils.writeValueAsBytes(data);
+            }
+        };
+        String code = store.createAuthorizationCode(uaaAuthentication);
+        OAuth2Authentication authentication = new UaaTokenStore(dataSource).consumeAuthorizationCode(code);
+        assertEquals(principal, authentication.getUserAuthentication().getPrincipal());
+        assertEquals("clientid", authentication.getOAuth2Request().getClientId());
+    }
+
+    @Test
+    public void code_is_consumed_once() throws Exception {
+        String code = store.createAuthorizationCode(usernamePasswordAuthentication);
+        UaaTokenStore other = new UaaTokenStore(dataSource) {
+            @Override
+            protected TokenCode removeTokenCode(JdbcTemplate template, String code) {
+                //another request redeems the code between our select and delete
+                store.consumeAuthorizationCode(code);
+                return super.removeTokenCode(template, code);
+            }
+        };
+        try {
+            other.consumeAuthorizationCode(code);
+            fail("A code must only be redeemed once");
+        } catch (InvalidGrantException expected) {
+        }
+    }
+
     @Test
     public void test_ConsumeClientCredentials_From_OldStore() throws  Exception {
         String code = legacyCodeServices.createAuthorizationCode(clientAuthentication);
@@ -5,6 +5,8 @@ import org.cloudfoundry.identity.uaa.oauth.KeyInfoBuilder;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
@@ -31,4 +33,18 @@ public class JwtHelperTest {
         Jwt jwt = JwtHelper.encode("testJwtContent", keyInfo);
         assertThat(jwt.getHeader().getJku(), is("https://localhost/uaa/token_keys"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void encodeFromBytesMatchesEncodeFromString() {
+        String content = "{\"sub\":\"user-id\",\"zid\":\"uaa\"}";
+        Jwt fromString = JwtHelper.encode(content, keyInfo);
+        Jwt fromBytes = JwtHelper.encode(content.getBytes(StandardCharsets.UTF_8), keyInfo);
+
+        assertEquals(fromString.getEncoded(), fromBytes.getEncoded());
+        assertEquals(content, fromBytes.getClaims());
+
+        Jwt decoded = JwtHelper.decode(fromBytes.getEncoded());
+        decoded.verifySignature(keyInfo.getVerifier());
+        assertEquals(content, decoded.getClaims());
+    }
+}
@@ -30,6 +30,7 @@ import org.junit.rules.ExpectedException;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.security.oauth2.common.util.RandomValueStringGenerator;
 import org.springframework.security.oauth2.provider.client.BaseClientDetails;
 
@@ -46,6 +47,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
@@ -105,6 +107,7 @@ public class JdbcRevocableTokenProvisioningTest extends JdbcTestBase {
     public void clear() {
         IdentityZoneHolder.clear();
         jdbcTemplate.update("DELETE FROM revocable_tokens");
+        jdbcTemplate.update("DELETE FROM revocable_token_epoch");
     }
 
     @Test
@@ -193,6 +196,59 @@ public class JdbcRevocableTokenProvisioningTest extends JdbcTestBase {
         dao.retrieve(tokenId, IdentityZoneHolder.get().getId());
     }
 
+    @Test
+    public void cached_tokens_are_read_once_and_evicted_on_delete() throws Exception {
+        dao.setCacheExpirationTime(60000);
+        String zoneId = IdentityZoneHolder.get().getId();
+        insertToken();
+        reset(dao.template);
+        assertNotNull(dao.retrieve(tokenId, zoneId));
+        assertNotNull(dao.retrieve(tokenId, zoneId));
+        verify(dao.template, times(0)).queryForObject(eq(JdbcRevocableTokenProvisioning.GET_QUERY), any(RowMapper.class), eq(tokenId), eq(zoneId));
+
+        dao.delete(tokenId, 0, zoneId);
+        try {
+            dao.retrieve(tokenId, zoneId);
+            fail();
+        } catch (EmptyResultDataAccessException x) {
+        }
+        try {
+            dao.retrieve(tokenId, zoneId);
+            fail();
+        } catch (EmptyResultDataAccessException x) {
+        }
+        //once by delete, which bypasses the cache, and once by the first retrieve
+        verify(dao.template, times(2)).queryForObject(eq(JdbcRevocableTokenProvisioning.GET_QUERY), any(RowMapper.class), eq(tokenId), eq(zoneId));
+    }
+
+    @Test
+    public void tokens_deleted_through_another_instance_are_evicted_from_the_cache() throws Exception {
+        dao.setCacheExpirationTime(60000);
+        dao.setEpochCheckInterval(0);
+        JdbcRevocableTokenProvisioning other = new JdbcRevocableTokenProvisioning(jdbcTemplate, limitSqlAdapter, new TimeServiceImpl());
+        other.setCacheExpirationTime(60000);
+        String zoneId = IdentityZoneHolder.get().getId();
+        insertToken();
+        assertNotNull(dao.retrieve(tokenId, zoneId));
+
+        other.delete(tokenId, 0, zoneId);
+        try {
+            dao.retrieve(tokenId, zoneId);
+            fail();
+        } catch (EmptyResultDataAccessException x) {
+        }
+    }
+
+    @Test(expected = EmptyResultDataAccessException.class)
+    public void delete_of_a_token_deleted_through_another_instance_fails() throws Exception {
+        dao.setCacheExpirationTime(60000);
+        String zoneId = IdentityZoneHolder.get().getId();
+        insertToken();
+        assertNotNull(dao.retrieve(tokenId, zoneId));
+        jdbcTemplate.update("DELETE FROM revocable_tokens");
+        dao.delete(tokenId, 0, zoneId);
+    }
+
     @Test
     public void insertToken() throws Exception {
         RevocableToken actual = dao.create(expected, IdentityZoneHolder.get().getId());
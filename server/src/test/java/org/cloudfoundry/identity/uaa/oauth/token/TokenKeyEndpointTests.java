@@ -26,6 +26,7 @@ import org.springframework.security.jwt.crypto.sign.RsaSigner;
 import org.springframework.security.jwt.crypto.sign.RsaVerifier;
 
 import java.security.Principal;
+import java.sql.Timestamp;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
@@ -36,7 +37,9 @@ import java.util.stream.Collectors;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -235,15 +238,48 @@ public class TokenKeyEndpointTests {
 
     @Test
     public void returns304IfUnmodified() {
-        IdentityZone zone = createAndSetTestZoneWithKeys(null);
+        IdentityZone zone = createAndSetTestZoneWithKeys(Collections.singletonMap("key1", SIGNING_KEY_1));
 
-        String lastModified = String.valueOf(zone.getLastModified().getTime());
+        String keyETag = tokenKeyEndpoint.getKey(mock(Principal.class), "NaN").getHeaders().getETag();
+        String keysETag = tokenKeyEndpoint.getKeys(mock(Principal.class), "NaN").getHeaders().getETag();
 
-        ResponseEntity<VerificationKeyResponse> keyResponse = tokenKeyEndpoint.getKey(mock(Principal.class), lastModified);
-        assertEquals(keyResponse.getStatusCode(), HttpStatus.NOT_MODIFIED);
+        //unrelated zone changes keep the keys, and so the ETags
+        zone.setName("renamed");
+        zone.setLastModified(new Timestamp(System.currentTimeMillis() + 1000));
 
-        ResponseEntity<VerificationKeysListResponse> keysResponse = tokenKeyEndpoint.getKeys(mock(Principal.class), lastModified);
-        assertEquals(keysResponse.getStatusCode(), HttpStatus.NOT_MODIFIED);
+        ResponseEntity<VerificationKeyResponse> keyResponse = tokenKeyEndpoint.getKey(mock(Principal.class), keyETag);
+        assertEquals(HttpStatus.NOT_MODIFIED, keyResponse.getStatusCode());
+        assertEquals(keyETag, keyResponse.getHeaders().getETag());
+
+        ResponseEntity<VerificationKeysListResponse> keysResponse = tokenKeyEndpoint.getKeys(mock(Principal.class), keysETag);
+        assertEquals(HttpStatus.NOT_MODIFIED, keysResponse.getStatusCode());
+        assertEquals(keysETag, keysResponse.getHeaders().getETag());
+    }
+
+    @Test
+    public void returnsNewETagWhenKeysChange() {
+        createAndSetTestZoneWithKeys(Collections.singletonMap("key1", SIGNING_KEY_1));
+        String keysETag = tokenKeyEndpoint.getKeys(mock(Principal.class), "NaN").getHeaders().getETag();
+
+        Map<String, String> keys = new HashMap<>();
+        keys.put("key1", SIGNING_KEY_1);
+        keys.put("key2", SIGNING_KEY_2);
+        createAndSetTestZoneWithKeys(keys);
+
+        ResponseEntity<VerificationKeysListResponse> keysResponse = tokenKeyEndpoint.getKeys(mock(Principal.class), keysETag);
+        assertEquals(HttpStatus.OK, keysResponse.getStatusCode());
+        assertEquals(2, keysResponse.getBody().getKeys().size());
+        assertNotEquals(keysETag, keysResponse.getHeaders().getETag());
+    }
+
+    @Test
+    public void sendsCacheControlWhenConfigured() {
+        createAndSetTestZoneWithKeys(Collections.singletonMap("key1", SIGNING_KEY_1));
+        assertNull(tokenKeyEndpoint.getKeys(mock(Principal.class), "NaN").getHeaders().getCacheControl());
+
+        tokenKeyEndpoint.setCacheMaxAge(60);
+        assertEquals("max-age=60", tokenKeyEndpoint.getKeys(mock(Principal.class), "NaN").getHeaders().getCacheControl());
+        assertEquals("max-age=60", tokenKeyEndpoint.getKey(mock(Principal.class), "NaN").getHeaders().getCacheControl());
     }
 
     private IdentityZone createAndSetTestZoneWithKeys(Map<String, String> keys) {
@@ -345,6 +345,16 @@ public class XOAuthProviderConfiguratorTests {
 
 
 
+    @Test
+    public void overlay_picksUpRefreshedDiscoveryDocument() throws MalformedURLException {
+        assertEquals(new URL("https://www.googleapis.com/oauth2/v3/userinfo"), configurator.overlay(config).getUserInfoUrl());
+        assertEquals(new URL("https://www.googleapis.com/oauth2/v3/userinfo"), configurator.overlay(config).getUserInfoUrl());
+
+        String refreshed = jsonResponse.replace("https://www.googleapis.com/oauth2/v3/userinfo", "https://www.googleapis.com/oauth2/v4/userinfo");
+        when(cache.getUrlContent(anyString(), any())).thenReturn(refreshed.getBytes());
+        assertEquals(new URL("https://www.googleapis.com/oauth2/v4/userinfo"), configurator.overlay(config).getUserInfoUrl());
+    }
+
     @Test
     public void getCompleteAuthorizationURI_includesNonceOnOIDC() throws UnsupportedEncodingException {
         String expected = String.format(baseExpect, oidc.getRelyingPartyId(), URLEncoder.encode("id_token code"), redirectUri, URLEncoder.encode("openid password.write"), "&nonce=");
@@ -10,6 +10,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.springframework.security.saml.key.JKSKeyManager;
+import org.springframework.security.saml.key.KeyManager;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.security.KeyStore;
@@ -255,6 +256,21 @@ public class SamlKeyManagerFactoryTests {
         assertEquals(ks1.getCertificate(alias), ks1.getCertificate(alias));
     }
 
+    @Test
+    public void key_manager_is_reused_for_the_same_keys() {
+        config.setActiveKeyId("key-1");
+        KeyManager manager1 = SamlKeyManagerFactory.getKeyManager(config);
+        assertSame(manager1, SamlKeyManagerFactory.getKeyManager(config));
+
+        config.setActiveKeyId("key-2");
+        KeyManager manager2 = SamlKeyManagerFactory.getKeyManager(config);
+        assertNotSame(manager1, manager2);
+        assertEquals("key-2", manager2.getDefaultCredentialName());
+
+        config.addKey("key-2", new SamlKey(key1, passphrase1, certificate1));
+        assertNotSame(manager2, SamlKeyManagerFactory.getKeyManager(config));
+    }
+
     @Test
     public void test_add_certs_keys_only() throws Exception {
         config.setKeys(EMPTY_MAP);
@@ -15,10 +15,17 @@
 
 package org.cloudfoundry.identity.uaa.provider.saml;
 
+import org.cloudfoundry.identity.uaa.util.TimeService;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
+import org.opensaml.Configuration;
+import org.opensaml.DefaultBootstrap;
+import org.opensaml.saml2.core.AuthnRequest;
 import org.opensaml.xml.XMLObject;
+import org.opensaml.xml.XMLObjectBuilder;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.SerializationUtils;
 
 import java.util.Arrays;
 import java.util.Map;
@@ -28,12 +35,18 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class SamlMessageStorageTest {
 
     private SamlMessageStorage storage;
     private Map<String, XMLObject> messages;
 
+    @BeforeClass
+    public static void bootstrap() throws Exception {
+        DefaultBootstrap.bootstrap();
+    }
+
     @Before
     public void setUp() throws Exception {
         storage = new SamlMessageStorage();
@@ -56,6 +69,43 @@ public class SamlMessageStorageTest {
         assertEquals(0, messages.size());
     }
 
+    @Test
+    public void oldest_message_is_dropped_when_full() throws Exception {
+        storage = new SamlMessageStorage(2, 60000);
+        long evicted = SamlMessageStorage.getEvictedMessages();
+        XMLObject message = mock(XMLObject.class);
+        storage.storeMessage("id1", message);
+        storage.storeMessage("id2", message);
+        storage.storeMessage("id3", message);
+        assertEquals(evicted + 1, SamlMessageStorage.getEvictedMessages());
+        assertNull(storage.retrieveMessage("id1"));
+        assertSame(message, storage.retrieveMessage("id2"));
+        assertSame(message, storage.retrieveMessage("id3"));
+    }
 
+    @Test
+    public void expired_message_is_not_returned() throws Exception {
+        TimeService timeService = mock(TimeService.class);
+        when(timeService.getCurrentTimeMillis()).thenReturn(1000L);
+        storage = new SamlMessageStorage(10, 60000);
+        storage.setTimeService(timeService);
+        storage.storeMessage("id", mock(XMLObject.class));
+        when(timeService.getCurrentTimeMillis()).thenReturn(61000L);
+        assertNull(storage.retrieveMessage("id"));
+    }
 
-}
\ No newline at end of file
+    @Test
+    public void message_is_kept_as_xml_and_survives_serialization() throws Exception {
+        XMLObjectBuilder<AuthnRequest> builder = Configuration.getBuilderFactory().getBuilder(AuthnRequest.DEFAULT_ELEMENT_NAME);
+        AuthnRequest request = builder.buildObject(AuthnRequest.DEFAULT_ELEMENT_NAME);
+        request.setID("request-id");
+        request.setAssertionConsumerServiceURL("http://localhost:8080/uaa/saml/SSO/alias/localhost");
+        storage.storeMessage("request-id", request);
+
+        SamlMessageStorage copy = (SamlMessageStorage) SerializationUtils.deserialize(SerializationUtils.serialize(storage));
+        XMLObject retrieved = copy.retrieveMessage("request-id");
+        assertNotNull(retrieved);
+        assertEquals("request-id", ((AuthnRequest) retrieved).getID());
+        assertEquals(request.getAssertionConsumerServiceURL(), ((AuthnRequest) retrieved).getAssertionConsumerServiceURL());
+    }
+}
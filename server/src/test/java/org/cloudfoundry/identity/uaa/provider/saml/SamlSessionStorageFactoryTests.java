@@ -19,12 +19,15 @@ import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.opensaml.xml.XMLObject;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.saml.storage.SAMLMessageStorage;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
 
 public class SamlSessionStorageFactoryTests {
 
@@ -57,6 +60,17 @@ public class SamlSessionStorageFactoryTests {
         assertSame(storage1, storage2);
     }
 
+    @Test
+    public void exposes_dropped_message_counts() throws Exception {
+        factory.setMaxMessages(1);
+        long evicted = factory.getEvictedMessages();
+        SAMLMessageStorage storage = factory.getMessageStorage(request);
+        storage.storeMessage("id1", mock(XMLObject.class));
+        storage.storeMessage("id2", mock(XMLObject.class));
+        assertEquals(evicted + 1, factory.getEvictedMessages());
+        assertEquals(SamlMessageStorage.getExpiredMessages(), factory.getExpiredMessages());
+    }
+
     @Test
     public void disable_message_storage() {
         IdentityZoneHolder.get().getConfig().getSamlConfig().setDisableInResponseToCheck(true);
@@ -20,6 +20,9 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Collections;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 
 public class LimitSqlAdapterTests extends JdbcTestBase {
@@ -65,5 +68,17 @@ public class LimitSqlAdapterTests extends JdbcTestBase {
         assertEquals(3, (int) jdbcTemplate.queryForObject("select count(*) from delete_top_rows_test", Integer.class));
     }
 
+    @Test
+    public void test_delete_returning() throws Exception {
+        String query = limitSqlAdapter.getDeleteReturningQuery("delete_top_rows_test", new String[] {"id", "expires"}, "id = ?");
+        if (query == null) {
+            return;
+        }
+        List<String> deleted = jdbcTemplate.query(query, (rs, rowNum) -> rs.getString(1) + ":" + rs.getInt(2), "K");
+        assertEquals(Collections.singletonList("K:3"), deleted);
+        assertEquals(0, (int) jdbcTemplate.queryForObject("select count(*) from delete_top_rows_test where id = 'K'", Integer.class));
+        assertEquals(4, (int) jdbcTemplate.queryForObject("select count(*) from delete_top_rows_test", Integer.class));
+    }
+
 
 }
\ No newline at end of file
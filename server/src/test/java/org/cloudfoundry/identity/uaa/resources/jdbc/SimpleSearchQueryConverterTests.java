@@ -22,12 +22,17 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.springframework.util.MultiValueMap;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class SimpleSearchQueryConverterTests {
@@ -135,4 +140,41 @@ public class SimpleSearchQueryConverterTests {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void simple_equality_filter_matches_parsed_filter() throws Exception {
+        SimpleSearchQueryConverter parsingConverter = new SimpleSearchQueryConverter() {
+            @Override
+            protected String simpleEqualityClause(String filter, Map<String, Object> values, String paramPrefix) {
+                return null;
+            }
+        };
+        for (boolean caseInsensitive : Arrays.asList(true, false)) {
+            converter.setDbCaseInsensitive(caseInsensitive);
+            parsingConverter.setDbCaseInsensitive(caseInsensitive);
+            for (String filter : Arrays.asList(
+                "id eq \"7e2345e8-8bbf-4eaa-9bc3-ae1ba610f890\"",
+                "userName eq \"marissa\"",
+                "username eq \"marissa@test.org\"",
+                "displayName eq \"uaa.user\"",
+                "client_id eq \"app\""
+            )) {
+                SearchQueryConverter.ProcessedFilter expected = parsingConverter.convert(filter, null, true);
+                SearchQueryConverter.ProcessedFilter actual = converter.convert(filter, null, true);
+                assertEquals(filter, expected.getSql().replace(expected.getParamPrefix(), "?"), actual.getSql().replace(actual.getParamPrefix(), "?"));
+                assertEquals(filter, new ArrayList<>(expected.getParams().values()), new ArrayList<>(actual.getParams().values()));
+            }
+        }
+    }
+
+    @Test
+    public void simple_equality_filter_only_for_fast_path_attributes() throws Exception {
+        Map<String, Object> values = new HashMap<>();
+        assertNull(converter.simpleEqualityClause("origin eq \"uaa\"", values, "__p_"));
+        assertNull(converter.simpleEqualityClause("userName eq \"a\\\"b\"", values, "__p_"));
+        assertNull(converter.simpleEqualityClause("userName eq \"marissa\" and origin eq \"uaa\"", values, "__p_"));
+        assertTrue(values.isEmpty());
+        assertEquals("LOWER(username) = LOWER(:__p_0)", converter.simpleEqualityClause("username eq \"marissa\"", values, "__p_"));
+        assertEquals("marissa", values.get("__p_0"));
+    }
+}
@@ -64,6 +64,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
@@ -167,6 +168,43 @@ public class ScimUserBootstrapTests extends JdbcTestBase {
         bootstrap.afterPropertiesSet();
     }
 
+    @Test
+    public void existing_users_are_looked_up_in_batches() throws Exception {
+        List<UaaUser> users = new LinkedList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(new UaaUser("user" + i, "password", "user" + i + "@test.org", "User", "" + i));
+        }
+        ScimUserBootstrap bootstrap = new ScimUserBootstrap(db, gdb, mdb, users);
+        bootstrap.setQueryBatchSize(2);
+        bootstrap.afterPropertiesSet();
+        String zoneId = IdentityZoneHolder.get().getId();
+        assertEquals(5, db.retrieveAll(zoneId).size());
+        verify(db, times(3)).query(anyString(), eq(zoneId));
+
+        reset(db);
+        bootstrap = new ScimUserBootstrap(db, gdb, mdb, users);
+        bootstrap.setQueryBatchSize(2);
+        bootstrap.setOverride(true);
+        bootstrap.afterPropertiesSet();
+        verify(db, times(3)).query(anyString(), eq(zoneId));
+        verify(db, never()).createUser(any(), anyString(), anyString());
+        assertEquals(5, db.retrieveAll(zoneId).size());
+    }
+
+    @Test
+    public void user_listed_twice_is_created_once() throws Exception {
+        UaaUser joe = new UaaUser("joe", "password", "joe@test.org", "Joe", "User");
+        UaaUser joeAgain = new UaaUser("joe", "password", "joe@test.org", "Joseph", "User");
+        ScimUserBootstrap bootstrap = new ScimUserBootstrap(db, gdb, mdb, Arrays.asList(joe, joeAgain));
+        bootstrap.setOverride(true);
+        bootstrap.afterPropertiesSet();
+        String zoneId = IdentityZoneHolder.get().getId();
+        List<ScimUser> users = db.retrieveAll(zoneId);
+        assertEquals(1, users.size());
+        assertEquals("Joseph", users.get(0).getGivenName());
+        verify(db, times(1)).createUser(any(), anyString(), anyString());
+    }
+
     @Test
     public void addedUsersAreVerified() throws Exception {
         UaaUser uaaJoe = new UaaUser("joe", "password", "joe@test.org", "Joe", "User");
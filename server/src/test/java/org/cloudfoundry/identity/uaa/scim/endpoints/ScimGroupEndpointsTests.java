@@ -74,9 +74,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -240,17 +240,18 @@ public class ScimGroupEndpointsTests extends JdbcTestBase {
         endpoints.setGroupMaxCount(20);
         validateSearchResults(endpoints.listGroups("id,displayName", "id pr", "created", "ascending", 1, 100), 11);
         verify(memberManager, times(0)).getMembers(anyString(), any(Boolean.class), anyString());
+        verify(memberManager, times(0)).getMembers(anyCollection(), anyString());
     }
 
     @Test
     public void testListGroupsWithAttributesWithMembersDoesQueryMembers() throws Exception {
         ScimGroupMembershipManager memberManager = mock(ScimGroupMembershipManager.class);
-        when(memberManager.getMembers(anyString(), eq(false), eq("uaa"))).thenReturn(Collections.emptyList());
+        when(memberManager.getMembers(anyCollection(), eq("uaa"))).thenReturn(Collections.emptyMap());
         endpoints = new ScimGroupEndpoints(dao, memberManager);
         endpoints.setExternalMembershipManager(em);
         endpoints.setGroupMaxCount(20);
         validateSearchResults(endpoints.listGroups("id,displayName,members", "id pr", "created", "ascending", 1, 100), 11);
-        verify(memberManager, atLeastOnce()).getMembers(anyString(), any(Boolean.class), anyString());
+        verify(memberManager, times(1)).getMembers(anyCollection(), eq("uaa"));
     }
 
     @Test
@@ -727,7 +728,7 @@ public class ScimGroupEndpointsTests extends JdbcTestBase {
 
         endpoints.deleteGroup(member.getMemberId(), "*", new MockHttpServletResponse());
 
-        List<ScimGroupMember> members = endpoints.listGroupMemberships(group.getId(), true, "").getBody();
+        List<ScimGroupMember> members = endpoints.listGroupMemberships(group.getId(), true, "", 1, null).getBody();
         assertEquals(0, members.size());
     }
 
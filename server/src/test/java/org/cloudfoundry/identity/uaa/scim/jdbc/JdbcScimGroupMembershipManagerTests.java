@@ -28,6 +28,7 @@ import org.cloudfoundry.identity.uaa.user.UaaUserPrototype;
 import org.cloudfoundry.identity.uaa.zone.IdentityZone;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.cloudfoundry.identity.uaa.zone.MultitenancyFixture;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -40,6 +41,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -58,6 +60,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
@@ -194,6 +197,28 @@ public class JdbcScimGroupMembershipManagerTests extends JdbcTestBase {
         verifyZeroInteractions(spy);
     }
 
+    @Test
+    public void default_user_groups_are_cached_until_zone_changes() throws Exception {
+        IdentityZone zone = MultitenancyFixture.identityZone("id", "subdomain");
+        zone.getConfig().getUserConfig().setDefaultGroups(Arrays.asList("g1", "g2"));
+        IdentityZoneHolder.set(zone);
+        JdbcScimGroupProvisioning spy = spy(gdao);
+        dao.setScimGroupProvisioning(spy);
+        assertEquals(2, dao.getDefaultUserGroups(zone.getId()).size());
+        reset(spy);
+        assertEquals(2, dao.getDefaultUserGroups(zone.getId()).size());
+        verifyZeroInteractions(spy);
+
+        zone.getConfig().getUserConfig().setDefaultGroups(Arrays.asList("g1", "g2", "g3"));
+        assertEquals(3, dao.getDefaultUserGroups(zone.getId()).size());
+        verify(spy, times(1)).createAndIgnoreDuplicate(eq("g3"), eq(zone.getId()));
+
+        reset(spy);
+        dao.onApplicationEvent(IdentityZoneModifiedEvent.identityZoneModified(zone));
+        assertEquals(3, dao.getDefaultUserGroups(zone.getId()).size());
+        verify(spy, times(3)).createAndIgnoreDuplicate(anyString(), eq(zone.getId()));
+    }
+
     @Test
     public void delete_by_member() throws Exception {
         addMember("g1", "m3", "USER", LDAP);
@@ -407,6 +432,19 @@ public class JdbcScimGroupMembershipManagerTests extends JdbcTestBase {
         assertEquals(4, groups.size());
     }
 
+    @Test
+    public void canGetGroupsForMemberReachedThroughSeveralPaths() {
+        addMember("g1", "m3", "USER", "READER");
+        addMember("g2", "m3", "USER", "READER");
+        addMember("g3", "g1", "GROUP", "READER");
+        addMember("g3", "g2", "GROUP", "READER");
+
+        Set<ScimGroup> groups = dao.getGroupsWithMember("m3", false, IdentityZoneHolder.get().getId());
+        assertEquals(3, groups.size());
+        groups = dao.getGroupsWithMember("m3", true, IdentityZoneHolder.get().getId());
+        assertEquals(4, groups.size());
+    }
+
     @Test
     public void canAddMember() throws Exception {
         validateCount(0);
@@ -474,6 +512,55 @@ public class JdbcScimGroupMembershipManagerTests extends JdbcTestBase {
 
     }
 
+    @Test
+    public void canGetMembersWithEntities() throws Exception {
+        addMember("g1", "m1", "USER", "READER");
+        addMember("g1", "m2", "USER", "READER");
+        addMember("g1", "g2", "GROUP", "READER");
+
+        List<ScimGroupMember> members = dao.getMembers("g1", true, IdentityZoneHolder.get().getId());
+        assertEquals(3, members.size());
+        for (ScimGroupMember member : members) {
+            assertNotNull(member.getEntity());
+            assertEquals(member.getMemberId(), member.getEntity().getId());
+        }
+    }
+
+    @Test(expected = ScimResourceNotFoundException.class)
+    public void getMembersWithEntities_Fails_For_Missing_Member() throws Exception {
+        addMember("g1", "m1", "USER", "READER");
+        addMember("g1", "missing", "USER", "READER");
+        dao.getMembers("g1", true, IdentityZoneHolder.get().getId());
+    }
+
+    @Test
+    public void canGetPageOfMembers() throws Exception {
+        dao.setLimitSqlAdapter(limitSqlAdapter);
+        addMember("g1", "m1", "USER", "READER");
+        addMember("g1", "m2", "USER", "READER");
+        addMember("g1", "m3", "USER", "READER");
+
+        List<ScimGroupMember> members = dao.getMembers("g1", true, IdentityZoneHolder.get().getId(), 2, 2);
+        assertEquals(Arrays.asList("m2", "m3"), members.stream().map(ScimGroupMember::getMemberId).collect(Collectors.toList()));
+        assertEquals("m2", members.get(0).getEntity().getId());
+
+        dao.setLimitSqlAdapter(null);
+        members = dao.getMembers("g1", false, IdentityZoneHolder.get().getId(), 1, 2);
+        assertEquals(Arrays.asList("m1", "m2"), members.stream().map(ScimGroupMember::getMemberId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void canGetMembersOfSeveralGroups() throws Exception {
+        addMember("g1", "m1", "USER", "READER");
+        addMember("g1", "g2", "GROUP", "READER");
+        addMember("g3", "m2", "USER", "READER");
+
+        Map<String, List<ScimGroupMember>> members = dao.getMembers(Arrays.asList("g1", "g2", "g3"), IdentityZoneHolder.get().getId());
+        assertEquals(2, members.get("g1").size());
+        assertEquals(0, members.get("g2").size());
+        assertEquals("m2", members.get("g3").get(0).getMemberId());
+    }
+
     @Test
     public void canGetMembers_Fails_In_Other_Zone() throws Exception {
         addMember("g1", "m1", "USER", "READER");
@@ -116,6 +116,28 @@ public class CorsFilterTests {
         assertEquals("*", response.getHeaderValue("Access-Control-Allow-Origin"));
     }
 
+    @Test
+    public void testOriginDecisionIsResetOnInitialize() throws ServletException, IOException {
+        CorsFilter corsFilter = createConfiguredCorsFilter();
+
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/uaa/userinfo");
+            request.addHeader("Origin", "example.com");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            corsFilter.doFilter(request, response, newMockFilterChain());
+            assertEquals("*", response.getHeaderValue("Access-Control-Allow-Origin"));
+        }
+
+        corsFilter.getDefaultConfiguration().setAllowedOrigins(Arrays.asList("example.org$"));
+        corsFilter.initialize();
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/uaa/userinfo");
+        request.addHeader("Origin", "example.com");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        corsFilter.doFilter(request, response, newMockFilterChain());
+        assertEquals(403, response.getStatus());
+    }
+
     @Test
     public void testRequestWithMaliciousOrigin() throws ServletException, IOException {
         CorsFilter corsFilter = createConfiguredCorsFilter();
@@ -355,6 +355,36 @@ public class JdbcUaaUserDatabaseTests extends JdbcTestBase {
         assertEquals((long) joe.getLastLogonTime(), 2000L);
     }
 
+    @Test
+    public void testCoalescedLastLogonTimeUpdates() {
+        LastLogonTimeWriter writer = new LastLogonTimeWriter(template, timeService);
+        writer.setFlushInterval(60000);
+        db.setLastLogonTimeWriter(writer);
+
+        when(timeService.getCurrentTimeMillis()).thenReturn(1000L);
+        db.updateLastLogonTime(JOE_ID);
+        db.updateLastLogonTime(MABEL_ID);
+        assertNull(db.retrieveUserById(JOE_ID).getLastLogonTime());
+        assertEquals(2, writer.getQueueDepth());
+        assertEquals(2, writer.flush());
+        assertEquals(1000L, (long) db.retrieveUserById(JOE_ID).getLastLogonTime());
+        assertNull(db.retrieveUserById(JOE_ID).getPreviousLogonTime());
+
+        for (long time = 2000; time <= 4000; time += 1000) {
+            when(timeService.getCurrentTimeMillis()).thenReturn(time);
+            db.updateLastLogonTime(JOE_ID);
+        }
+        assertEquals(1, writer.getQueueDepth());
+        assertEquals(1, writer.flush());
+        assertEquals(0, writer.getQueueDepth());
+        UaaUser joe = db.retrieveUserById(JOE_ID);
+        assertEquals(3000L, (long) joe.getPreviousLogonTime());
+        assertEquals(4000L, (long) joe.getLastLogonTime());
+        assertEquals(5, writer.getLogonCount());
+        assertEquals(3, writer.getWriteCount());
+        assertEquals(2, writer.getFlushCount());
+    }
+
     @Test(expected = UsernameNotFoundException.class)
     public void getValidUserInDefaultZoneFromOtherZoneFails() {
         IdentityZoneHolder.set(otherIdentityZone);
@@ -0,0 +1,194 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.web;
+
+import org.cloudfoundry.identity.uaa.test.JdbcTestBase;
+import org.cloudfoundry.identity.uaa.test.TestUtils;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SessionStoreFilterTests extends JdbcTestBase {
+
+    private TimeService timeService = mock(TimeService.class);
+    private JdbcSessionStore store;
+    private SessionStoreFilter filter;
+    private long now = 1000000;
+
+    @Before
+    public void setUpFilter() throws Exception {
+        TestUtils.deleteFrom(jdbcTemplate.getDataSource(), JdbcSessionStore.ATTRIBUTE_TABLE, JdbcSessionStore.SESSION_TABLE);
+        when(timeService.getCurrentTimeMillis()).thenAnswer(invocation -> now);
+        store = new JdbcSessionStore(jdbcTemplate, timeService, 100);
+        filter = new SessionStoreFilter(store);
+        filter.setEnabled(true);
+        filter.setMaxInactiveInterval(60);
+    }
+
+    @Test
+    public void session_is_shared_through_the_database() throws Exception {
+        MockHttpServletResponse response = perform(null, request -> request.getSession().setAttribute("saved", "request"));
+        Cookie cookie = response.getCookie(SessionStoreFilter.DEFAULT_COOKIE_NAME);
+        assertNotNull(cookie);
+
+        //a second instance, with an empty local cache, sees the attribute
+        filter = new SessionStoreFilter(new JdbcSessionStore(jdbcTemplate, timeService, 100));
+        filter.setEnabled(true);
+        perform(cookie, request -> {
+            HttpSession session = request.getSession(false);
+            assertNotNull(session);
+            assertEquals(cookie.getValue(), session.getId());
+            assertFalse(session.isNew());
+            assertEquals("request", session.getAttribute("saved"));
+            session.removeAttribute("saved");
+        });
+        perform(cookie, request -> assertNull(request.getSession(false).getAttribute("saved")));
+    }
+
+    @Test
+    public void no_session_is_created_unless_requested() throws Exception {
+        MockHttpServletResponse response = perform(null, request -> assertNull(request.getSession(false)));
+        assertNull(response.getCookie(SessionStoreFilter.DEFAULT_COOKIE_NAME));
+        assertEquals(0, (int) jdbcTemplate.queryForObject("select count(*) from " + JdbcSessionStore.SESSION_TABLE, Integer.class));
+    }
+
+    @Test
+    public void expired_session_is_not_loaded() throws Exception {
+        Cookie cookie = perform(null, request -> request.getSession().setAttribute("name", "value")).getCookie(SessionStoreFilter.DEFAULT_COOKIE_NAME);
+        now += 61 * 1000;
+        perform(cookie, request -> assertNull(request.getSession(false)));
+    }
+
+    @Test
+    public void unchanged_session_is_touched_after_interval() throws Exception {
+        store.setTouchInterval(10 * 1000);
+        Cookie cookie = perform(null, request -> request.getSession().setAttribute("name", "value")).getCookie(SessionStoreFilter.DEFAULT_COOKIE_NAME);
+        now += 5 * 1000;
+        perform(cookie, request -> request.getSession(false));
+        assertEquals(1000000L, (long) jdbcTemplate.queryForObject("select last_accessed from " + JdbcSessionStore.SESSION_TABLE, Long.class));
+        now += 6 * 1000;
+        perform(cookie, request -> request.getSession(false));
+        assertEquals(now, (long) jdbcTemplate.queryForObject("select last_accessed from " + JdbcSessionStore.SESSION_TABLE, Long.class));
+    }
+
+    @Test
+    public void change_session_id_keeps_attributes() throws Exception {
+        Cookie cookie = perform(null, request -> request.getSession().setAttribute("name", "value")).getCookie(SessionStoreFilter.DEFAULT_COOKIE_NAME);
+        MockHttpServletResponse response = perform(cookie, HttpServletRequest::changeSessionId);
+        Cookie changed = response.getCookie(SessionStoreFilter.DEFAULT_COOKIE_NAME);
+        assertNotEquals(cookie.getValue(), changed.getValue());
+        perform(cookie, request -> assertNull(request.getSession(false)));
+        perform(changed, request -> assertEquals("value", request.getSession(false).getAttribute("name")));
+    }
+
+    @Test
+    public void invalidated_session_is_deleted() throws Exception {
+        Cookie cookie = perform(null, request -> request.getSession().setAttribute("name", "value")).getCookie(SessionStoreFilter.DEFAULT_COOKIE_NAME);
+        MockHttpServletResponse response = perform(cookie, request -> request.getSession(false).invalidate());
+        assertEquals(0, response.getCookie(SessionStoreFilter.DEFAULT_COOKIE_NAME).getMaxAge());
+        assertEquals(0, (int) jdbcTemplate.queryForObject("select count(*) from " + JdbcSessionStore.ATTRIBUTE_TABLE, Integer.class));
+        perform(cookie, request -> assertNull(request.getSession(false)));
+    }
+
+    @Test
+    public void attribute_changed_in_place_is_written() throws Exception {
+        Cookie cookie = perform(null, request -> request.getSession().setAttribute("list", new ArrayList<>(Collections.singletonList("first")))).getCookie(SessionStoreFilter.DEFAULT_COOKIE_NAME);
+        perform(cookie, request -> ((List<String>) request.getSession(false).getAttribute("list")).add("second"));
+
+        filter = new SessionStoreFilter(new JdbcSessionStore(jdbcTemplate, timeService, 100));
+        filter.setEnabled(true);
+        perform(cookie, request -> assertEquals(Arrays.asList("first", "second"), request.getSession(false).getAttribute("list")));
+    }
+
+    @Test
+    public void each_request_gets_its_own_copy_of_the_attributes() throws Exception {
+        String id = perform(null, request -> request.getSession().setAttribute("list", new ArrayList<>(Collections.singletonList("first")))).getCookie(SessionStoreFilter.DEFAULT_COOKIE_NAME).getValue();
+        StoredHttpSession first = store.load(id);
+        StoredHttpSession second = store.load(id);
+        ((List<String>) first.getAttribute("list")).add("second");
+        assertEquals(Collections.singletonList("first"), second.getAttribute("list"));
+    }
+
+    @Test
+    public void concurrent_changes_of_one_session_are_both_kept() throws Exception {
+        String id = perform(null, request -> request.getSession().setAttribute("name", "value")).getCookie(SessionStoreFilter.DEFAULT_COOKIE_NAME).getValue();
+        StoredHttpSession first = store.load(id);
+        StoredHttpSession second = store.load(id);
+        first.setAttribute("first", "one");
+        second.setAttribute("second", "two");
+        store.save(first);
+        store.save(second);
+
+        StoredHttpSession loaded = store.load(id);
+        assertEquals("one", loaded.getAttribute("first"));
+        assertEquals("two", loaded.getAttribute("second"));
+        assertEquals("value", loaded.getAttribute("name"));
+    }
+
+    @Test
+    public void changes_to_a_deleted_session_are_dropped() throws Exception {
+        String id = perform(null, request -> request.getSession().setAttribute("name", "value")).getCookie(SessionStoreFilter.DEFAULT_COOKIE_NAME).getValue();
+        StoredHttpSession session = store.load(id);
+        new JdbcSessionStore(jdbcTemplate, timeService, 100).delete(id);
+        session.setAttribute("other", "value");
+        store.save(session);
+
+        assertNull(store.load(id));
+        assertEquals(0, (int) jdbcTemplate.queryForObject("select count(*) from " + JdbcSessionStore.ATTRIBUTE_TABLE, Integer.class));
+    }
+
+    @Test
+    public void disabled_filter_uses_container_session() throws Exception {
+        filter.setEnabled(false);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/login");
+        FilterChain chain = (req, res) -> assertSame(request, req);
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+    }
+
+    private MockHttpServletResponse perform(Cookie cookie, RequestCallback callback) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/login");
+        if (cookie != null) {
+            request.setCookies(new Cookie(cookie.getName(), cookie.getValue()));
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> callback.doWithRequest((HttpServletRequest) req));
+        return response;
+    }
+
+    private interface RequestCallback {
+        void doWithRequest(HttpServletRequest request);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.mock.load;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free latency histogram with microsecond resolution up to one
+ * millisecond. Above that every decade is split into 900 buckets, so the
+ * relative error is at most 1%, at the low end of a decade.
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR_BUCKETS = 1000;
+    private static final int SUB_BUCKETS = 900;
+    private static final int DECADES = 6;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(LINEAR_BUCKETS + DECADES * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long micros, boolean error) {
+        long value = Math.max(0, micros);
+        buckets.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        totalMicros.addAndGet(value);
+        maxMicros.accumulateAndGet(value, Math::max);
+        if (error) {
+            errors.incrementAndGet();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public double getAverageMillis() {
+        long c = count.get();
+        return c == 0 ? 0 : totalMicros.get() / (c * 1000.0);
+    }
+
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * @param percentile a value between 0 and 100
+     * @return the upper bound, in milliseconds, of the bucket holding the given percentile
+     */
+    public double getPercentileMillis(double percentile) {
+        long c = count.get();
+        if (c == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(c * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxMicros.get()) / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    static int bucket(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int decade = 0;
+        long scaled = micros / 10;
+        while (scaled >= LINEAR_BUCKETS && decade < DECADES - 1) {
+            scaled /= 10;
+            decade++;
+        }
+        int sub = (int) Math.min(SUB_BUCKETS - 1, (scaled - LINEAR_BUCKETS / 10) * SUB_BUCKETS / (LINEAR_BUCKETS - LINEAR_BUCKETS / 10));
+        return LINEAR_BUCKETS + decade * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int decade = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+        int sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long scale = (long) Math.pow(10, decade + 1);
+        long lower = LINEAR_BUCKETS / 10 + (long) sub * (LINEAR_BUCKETS - LINEAR_BUCKETS / 10) / SUB_BUCKETS;
+        long width = (LINEAR_BUCKETS - LINEAR_BUCKETS / 10) / SUB_BUCKETS;
+        return (lower + width) * scale - 1;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.mock.load;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTests {
+
+    @Test
+    public void empty_histogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0.0, histogram.getPercentileMillis(99), 0.0);
+        assertEquals(0.0, histogram.getAverageMillis(), 0.0);
+    }
+
+    @Test
+    public void percentiles_within_one_percent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i * 10, i % 100 == 0);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertEquals(1000, histogram.getErrors());
+        assertEquals(500.0, histogram.getPercentileMillis(50), 5.0);
+        assertEquals(990.0, histogram.getPercentileMillis(99), 9.9);
+        assertEquals(1000.0, histogram.getPercentileMillis(100), 0.0);
+        assertEquals(1000.0, histogram.getMaxMillis(), 0.0);
+        assertEquals(500.005, histogram.getAverageMillis(), 0.001);
+    }
+
+    @Test
+    public void bucket_upper_bound_contains_value() {
+        for (long micros : new long[] {0, 999, 1000, 1089, 1090, 9999, 10000, 123456, 59000000}) {
+            assertTrue(micros + " fits", LatencyHistogram.upperBound(LatencyHistogram.bucket(micros)) >= micros);
+        }
+    }
+
+    @Test
+    public void bucket_error_is_at_most_one_percent() {
+        for (long micros : new long[] {1000, 1500, 9999, 10000, 100000, 999999, 1000000}) {
+            long upperBound = LatencyHistogram.upperBound(LatencyHistogram.bucket(micros));
+            assertTrue(micros + " within 1%", upperBound - micros <= micros / 100);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * ****************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2017] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ * ****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.mock.load;
+
+import org.apache.commons.codec.binary.Base64;
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthentication;
+import org.cloudfoundry.identity.uaa.authentication.UaaPrincipal;
+import org.cloudfoundry.identity.uaa.constants.OriginKeys;
+import org.cloudfoundry.identity.uaa.metrics.UaaMetricsFilter;
+import org.cloudfoundry.identity.uaa.metrics.UrlGroup;
+import org.cloudfoundry.identity.uaa.mock.DefaultConfigurationTestSuite;
+import org.cloudfoundry.identity.uaa.mock.util.MockMvcUtils;
+import org.cloudfoundry.identity.uaa.scim.ScimGroup;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMembershipManager;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupProvisioning;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.cloudfoundry.identity.uaa.scim.ScimUserProvisioning;
+import org.cloudfoundry.identity.uaa.user.UaaAuthority;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.MultitenantJdbcClientDetailsService;
+import org.flywaydb.core.Flyway;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.common.util.OAuth2Utils;
+import org.springframework.security.oauth2.provider.client.BaseClientDetails;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.support.XmlWebApplicationContext;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Boots the UAA web application against the default in memory HSQLDB, seeds a
+ * scripted data set and drives the OAuth flows at a configurable concurrency.
+ * Latencies are reported per {@link UaaMetricsFilter} URL group so results can be
+ * compared to the statsd data of a production deployment.
+ * <p>
+ * Configured through system properties, see {@code ./gradlew :cloudfoundry-identity-uaa:loadTest}:
+ * <ul>
+ * <li>{@code load.zones} - number of identity zones, including the default zone (1)</li>
+ * <li>{@code load.users} - users per zone (100)</li>
+ * <li>{@code load.groups} - groups per zone every user is a member of (5)</li>
+ * <li>{@code load.concurrency} - number of worker threads (8)</li>
+ * <li>{@code load.warmup} - warm up time in seconds, not reported (10)</li>
+ * <li>{@code load.duration} - measured time in seconds (60)</li>
+ * <li>{@code load.flows} - comma separated list of {@link Flow} names (all)</li>
+ * </ul>
+ */
+public class OAuthFlowLoadGenerator {
+
+    public enum Flow {
+        password, client_credentials, refresh_token, authorization_code, check_token
+    }
+
+    static final String CLIENT_ID = "load-client";
+    static final String CLIENT_SECRET = "load-secret";
+    static final String USER_PASSWORD = "load-password";
+    static final String REDIRECT_URI = "http://localhost/load";
+    static final String SCOPE_PREFIX = "load.scope";
+
+    private final int zones = Integer.getInteger("load.zones", 1);
+    private final int usersPerZone = Integer.getInteger("load.users", 100);
+    private final int groupsPerZone = Integer.getInteger("load.groups", 5);
+    private final int concurrency = Integer.getInteger("load.concurrency", 8);
+    private final int warmupSeconds = Integer.getInteger("load.warmup", 10);
+    private final int durationSeconds = Integer.getInteger("load.duration", 60);
+    private final List<Flow> flows = parseFlows(System.getProperty("load.flows"));
+
+    private final List<LoadZone> loadZones = new ArrayList<>();
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<Flow, AtomicLong> failedFlows = new ConcurrentHashMap<>();
+    private int stoppedWorkers = 0;
+    private final Map<AntPathRequestMatcher, UrlGroup> urlGroups = new LinkedHashMap<>();
+    private volatile boolean recording = false;
+
+    private XmlWebApplicationContext context;
+    private MockMvc mockMvc;
+    private UaaMetricsFilter metricsFilter;
+
+    public static void main(String[] args) throws Exception {
+        new OAuthFlowLoadGenerator().run();
+        System.exit(0);
+    }
+
+    public void run() throws Exception {
+        boot();
+        try {
+            seed();
+            drive();
+            report();
+        } finally {
+            context.getBean(Flyway.class).clean();
+            context.destroy();
+        }
+    }
+
+    protected void boot() throws Exception {
+        context = DefaultConfigurationTestSuite.setUpContext();
+        FilterChainProxy springSecurityFilterChain = context.getBean("springSecurityFilterChain", FilterChainProxy.class);
+        mockMvc = MockMvcBuilders.webAppContextSetup(context)
+            .addFilter(springSecurityFilterChain)
+            .build();
+        metricsFilter = context.getBean(UaaMetricsFilter.class);
+        for (UrlGroup group : metricsFilter.getUrlGroups()) {
+            urlGroups.put(new AntPathRequestMatcher(group.getPattern()), group);
+        }
+    }
+
+    protected void seed() throws Exception {
+        long start = System.currentTimeMillis();
+        for (int z = 0; z < zones; z++) {
+            IdentityZone zone = z == 0 ? IdentityZone.getUaa() : MockMvcUtils.createOtherIdentityZone("load-zone-" + z, mockMvc, context, false);
+            loadZones.add(seedZone(zone));
+        }
+        System.out.println(String.format("Seeded %d zone(s) with %d users and %d groups each in %d ms",
+                                         zones, usersPerZone, groupsPerZone, System.currentTimeMillis() - start));
+    }
+
+    private LoadZone seedZone(IdentityZone zone) {
+        List<String> scopes = new ArrayList<>(Collections.singletonList("openid"));
+        ScimGroupProvisioning groupProvisioning = context.getBean(ScimGroupProvisioning.class);
+        ScimGroupMembershipManager membershipManager = context.getBean(ScimGroupMembershipManager.class);
+        List<ScimGroup> groups = new ArrayList<>();
+        for (int g = 0; g < groupsPerZone; g++) {
+            ScimGroup group = new ScimGroup(null, SCOPE_PREFIX + g, zone.getId());
+            groups.add(groupProvisioning.create(group, zone.getId()));
+            scopes.add(group.getDisplayName());
+        }
+
+        BaseClientDetails client = new BaseClientDetails(
+            CLIENT_ID,
+            null,
+            StringUtils.collectionToCommaDelimitedString(scopes),
+            "password,client_credentials,refresh_token,authorization_code",
+            "uaa.resource",
+            REDIRECT_URI
+        );
+        client.setClientSecret(CLIENT_SECRET);
+        client.setAutoApproveScopes(Collections.singleton("true"));
+        context.getBean(MultitenantJdbcClientDetailsService.class).addClientDetails(client, zone.getId());
+
+        ScimUserProvisioning userProvisioning = context.getBean(ScimUserProvisioning.class);
+        List<ScimUser> users = new ArrayList<>();
+        for (int u = 0; u < usersPerZone; u++) {
+            String username = "load-user-" + u;
+            ScimUser user = new ScimUser(null, username, "Load", "User " + u);
+            user.setPrimaryEmail(username + "@load.test");
+            user.setOrigin(OriginKeys.UAA);
+            user.setZoneId(zone.getId());
+            user = userProvisioning.createUser(user, USER_PASSWORD, zone.getId());
+            for (ScimGroup group : groups) {
+                membershipManager.addMember(group.getId(), new ScimGroupMember(user.getId()), zone.getId());
+            }
+            users.add(user);
+        }
+        return new LoadZone(zone, users, StringUtils.collectionToDelimitedString(scopes, " "));
+    }
+
+    protected void drive() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(durationSeconds);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(executor.submit(() -> {
+                Worker worker = new Worker();
+                while (System.nanoTime() < end) {
+                    worker.next();
+                }
+                return null;
+            }));
+        }
+        while (System.nanoTime() < warmupEnd) {
+            Thread.sleep(100);
+        }
+        recording = true;
+        executor.shutdown();
+        if (!executor.awaitTermination(durationSeconds + 60, TimeUnit.SECONDS)) {
+            System.out.println("Workers did not finish in time, stopping them.");
+            executor.shutdownNow();
+        }
+        recording = false;
+        for (Future<?> worker : workers) {
+            if (!worker.isDone()) {
+                stoppedWorkers++;
+                continue;
+            }
+            try {
+                worker.get();
+            } catch (ExecutionException e) {
+                stoppedWorkers++;
+                System.out.println("A worker stopped early: " + e.getCause());
+            }
+        }
+    }
+
+    protected void report() {
+        System.out.println(String.format("%-30s %10s %8s %10s %10s %10s %10s %10s %10s",
+                                         "group", "requests", "errors", "req/s", "avg ms", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        latencies.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(entry -> {
+            LatencyHistogram h = entry.getValue();
+            System.out.println(String.format("%-30s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f %10.2f",
+                                             entry.getKey(),
+                                             h.getCount(),
+                                             h.getErrors(),
+                                             h.getCount() / (double) durationSeconds,
+                                             h.getAverageMillis(),
+                                             h.getPercentileMillis(50),
+                                             h.getPercentileMillis(95),
+                                             h.getPercentileMillis(99),
+                                             h.getMaxMillis()));
+        });
+        failedFlows.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(entry ->
+            System.out.println(String.format("%-30s %10s %8d", "flow " + entry.getKey(), "", entry.getValue().get())));
+        if (stoppedWorkers > 0) {
+            System.out.println(String.format("%d of %d workers stopped early, the effective concurrency was lower.", stoppedWorkers, concurrency));
+        }
+        System.out.println("Server side UaaMetricsFilter summary (includes warm up):");
+        metricsFilter.getSummary().forEach((group, summary) -> System.out.println(group + " " + summary));
+    }
+
+    private MvcResult perform(LoadZone zone, MockHttpServletRequestBuilder builder, String path) throws Exception {
+        builder.header("Host", zone.host);
+        long start = System.nanoTime();
+        MvcResult result = null;
+        try {
+            result = mockMvc.perform(builder).andReturn();
+            return result;
+        } finally {
+            if (recording) {
+                int status = result == null ? 500 : result.getResponse().getStatus();
+                latencies.computeIfAbsent(urlGroup(path), k -> new LatencyHistogram())
+                    .record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start), status >= 400);
+            }
+        }
+    }
+
+    private String urlGroup(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServletPath(path);
+        for (Map.Entry<AntPathRequestMatcher, UrlGroup> entry : urlGroups.entrySet()) {
+            if (entry.getKey().matches(request)) {
+                return entry.getValue().getGroup();
+            }
+        }
+        return UaaMetricsFilter.FALLBACK.getGroup();
+    }
+
+    private static List<Flow> parseFlows(String flows) {
+        if (!StringUtils.hasText(flows)) {
+            return Arrays.asList(Flow.values());
+        }
+        List<Flow> result = new ArrayList<>();
+        for (String flow : StringUtils.commaDelimitedListToStringArray(flows)) {
+            result.add(Flow.valueOf(flow.trim()));
+        }
+        return result;
+    }
+
+    private static String basic() {
+        return "Basic " + new String(Base64.encodeBase64((CLIENT_ID + ":" + CLIENT_SECRET).getBytes()));
+    }
+
+    private static class LoadZone {
+        private final IdentityZone zone;
+        private final List<ScimUser> users;
+        private final String scopes;
+        private final String host;
+
+        LoadZone(IdentityZone zone, List<ScimUser> users, String scopes) {
+            this.zone = zone;
+            this.users = users;
+            this.scopes = scopes;
+            this.host = StringUtils.hasText(zone.getSubdomain()) ? zone.getSubdomain() + ".localhost" : "localhost";
+        }
+    }
+
+    private class Worker {
+        private final Map<String, Map<String, Object>> tokens = new LinkedHashMap<>();
+
+        void next() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            LoadZone zone = loadZones.get(random.nextInt(loadZones.size()));
+            ScimUser user = zone.users.get(random.nextInt(zone.users.size()));
+            Flow flow = flows.get(random.nextInt(flows.size()));
+            try {
+                run(flow, zone, user);
+            } catch (Exception e) {
+                //a failed flow must not stop the worker; start over with a new token
+                tokens.remove(zone.zone.getId());
+                if (recording) {
+                    failedFlows.computeIfAbsent(flow, k -> new AtomicLong()).incrementAndGet();
+                }
+            }
+        }
+
+        private void run(Flow flow, LoadZone zone, ScimUser user) throws Exception {
+            switch (flow) {
+                case password:
+                    tokens.put(zone.zone.getId(), passwordGrant(zone, user));
+                    break;
+                case client_credentials:
+                    perform(zone, post("/oauth/token")
+                        .header("Authorization", basic())
+                        .accept(APPLICATION_JSON_VALUE)
+                        .param(OAuth2Utils.GRANT_TYPE, "client_credentials"), "/oauth/token");
+                    break;
+                case refresh_token:
+                    perform(zone, post("/oauth/token")
+                        .header("Authorization", basic())
+                        .accept(APPLICATION_JSON_VALUE)
+                        .param(OAuth2Utils.GRANT_TYPE, "refresh_token")
+                        .param("refresh_token", (String) token(zone, user).get("refresh_token")), "/oauth/token");
+                    break;
+                case authorization_code:
+                    authorizationCodeGrant(zone, user);
+                    break;
+                case check_token:
+                    perform(zone, post("/check_token")
+                        .header("Authorization", basic())
+                        .accept(APPLICATION_JSON_VALUE)
+                        .param("token", (String) token(zone, user).get("access_token")), "/check_token");
+                    break;
+            }
+        }
+
+        private Map<String, Object> token(LoadZone zone, ScimUser user) throws Exception {
+            Map<String, Object> token = tokens.get(zone.zone.getId());
+            if (token == null) {
+                token = passwordGrant(zone, user);
+                tokens.put(zone.zone.getId(), token);
+            }
+            return token;
+        }
+
+        private Map<String, Object> passwordGrant(LoadZone zone, ScimUser user) throws Exception {
+            MvcResult result = perform(zone, post("/oauth/token")
+                .header("Authorization", basic())
+                .accept(APPLICATION_JSON_VALUE)
+                .param(OAuth2Utils.GRANT_TYPE, "password")
+                .param("username", user.getUserName())
+                .param("password", USER_PASSWORD), "/oauth/token");
+            if (result.getResponse().getStatus() != 200) {
+                throw new IllegalStateException("Password grant failed with status " + result.getResponse().getStatus());
+            }
+            return JsonUtils.readValue(result.getResponse().getContentAsString(), Map.class);
+        }
+
+        private void authorizationCodeGrant(LoadZone zone, ScimUser user) throws Exception {
+            UaaPrincipal principal = new UaaPrincipal(user.getId(), user.getUserName(), user.getPrimaryEmail(), OriginKeys.UAA, null, zone.zone.getId());
+            UaaAuthentication authentication = new UaaAuthentication(principal, UaaAuthority.USER_AUTHORITIES, null);
+            SecurityContextImpl securityContext = new SecurityContextImpl();
+            securityContext.setAuthentication(authentication);
+            MockHttpSession session = new MockHttpSession();
+            session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, securityContext);
+
+            MvcResult authorize = perform(zone, get("/oauth/authorize")
+                .session(session)
+                .param(OAuth2Utils.RESPONSE_TYPE, "code")
+                .param(OAuth2Utils.CLIENT_ID, CLIENT_ID)
+                .param(OAuth2Utils.STATE, "load")
+                .param(OAuth2Utils.SCOPE, zone.scopes)
+                .param(OAuth2Utils.REDIRECT_URI, REDIRECT_URI), "/oauth/authorize");
+            String location = authorize.getResponse().getHeader("Location");
+            List<String> code = location == null ? null : UriComponentsBuilder.fromUriString(location).build().getQueryParams().get("code");
+            if (code == null || code.isEmpty()) {
+                throw new IllegalStateException("Authorization request returned no code, status " + authorize.getResponse().getStatus());
+            }
+            perform(zone, post("/oauth/token")
+                .header("Authorization", basic())
+                .accept(APPLICATION_JSON_VALUE)
+                .param(OAuth2Utils.GRANT_TYPE, "authorization_code")
+                .param("code", code.get(0))
+                .param(OAuth2Utils.REDIRECT_URI, REDIRECT_URI), "/oauth/token");
+        }
+    }
+}
@@ -122,11 +122,18 @@ public class TokenKeyEndpointMockMvcTests extends InjectedMockContextTest {
 
     @Test
     public void checkTokenKeyReturns304IfResourceUnchanged() throws Exception {
+        String eTag = getMockMvc().perform(
+          get("/token_key")
+            .with(new SetServerNameRequestPostProcessor(testZone.getSubdomain() + ".localhost")))
+          .andExpect(status().isOk())
+          .andReturn().getResponse().getHeader("ETag");
+
         getMockMvc().perform(
           get("/token_key")
             .with(new SetServerNameRequestPostProcessor(testZone.getSubdomain() + ".localhost"))
-            .header("If-None-Match", testZone.getLastModified().getTime()))
+            .header("If-None-Match", eTag))
           .andExpect(status().isNotModified())
+          .andExpect(header().string("ETag", eTag))
           .andReturn();
     }
 
@@ -247,11 +254,18 @@ public class TokenKeyEndpointMockMvcTests extends InjectedMockContextTest {
 
     @Test
     public void checkTokenKeysReturns304IfResourceUnchanged() throws Exception {
+        String eTag = getMockMvc().perform(
+          get("/token_keys")
+            .with(new SetServerNameRequestPostProcessor(testZone.getSubdomain() + ".localhost")))
+          .andExpect(status().isOk())
+          .andReturn().getResponse().getHeader("ETag");
+
         getMockMvc().perform(
           get("/token_keys")
             .with(new SetServerNameRequestPostProcessor(testZone.getSubdomain() + ".localhost"))
-            .header("If-None-Match", testZone.getLastModified().getTime()))
+            .header("If-None-Match", eTag))
           .andExpect(status().isNotModified())
+          .andExpect(header().string("ETag", eTag))
           .andReturn();
     }
 